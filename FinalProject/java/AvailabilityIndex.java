@@ -0,0 +1,197 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class keeps room availability in memory: one DayBitmap of booked days
+ * per (hotelID, roomNo), and the sorted room numbers of every hotel.  It is
+ * built once from the Room and Booking tables and then kept current by
+ * addRoom and bookRoom, so availability for a date range is answered without
+ * going to the database.
+ *
+ * Rooms and bookings added by other programs are read by refresh, which
+ * option 8 runs before every report: it reads the rooms again and the
+ * bookings whose bID is above the highest one seen, less OVERLAP_KEYS, as
+ * keys come in blocks (see KeyAllocator) and a booking can be committed
+ * after ones with a higher bID.  Bookings deleted or moved by other programs
+ * stay booked here until the program is restarted.
+ *
+ * Days are numbered from 1970-01-01, see DateCodec.
+ */
+public class AvailabilityIndex {
+
+   static final int OVERLAP_KEYS = Integer.getInteger("dbproject.availability.overlapKeys", 1000);
+
+   static final String BOOKINGS_AFTER = "SELECT b.bID, b.hotelID, b.roomNo, " + DateCodec.column("b.bookingDate") + " FROM Booking b WHERE b.bID > ?";
+
+   private final LongHashMap<DayBitmap> booked = new LongHashMap<DayBitmap>(1 << 14);
+   private final LongHashMap<RoomList> rooms = new LongHashMap<RoomList>(1 << 10);
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+   private long bookings = 0;
+   // the highest bID read from Booking, guarded by refreshing
+   private int highest = Integer.MIN_VALUE;
+   private final Object refreshing = new Object();
+
+   /* The sorted room numbers of one hotel */
+   private static class RoomList {
+      int[] rooms = new int[8];
+      int size = 0;
+
+      void add (int roomNo) {
+         int i = Arrays.binarySearch(this.rooms, 0, this.size, roomNo);
+         if (i >= 0)
+            return;
+         i = -i - 1;
+         if (this.size == this.rooms.length)
+            this.rooms = Arrays.copyOf(this.rooms, this.size * 2);
+         System.arraycopy(this.rooms, i, this.rooms, i + 1, this.size - i);
+         this.rooms[i] = roomNo;
+         ++this.size;
+      }
+   }//end RoomList
+
+   /**
+    * Loads every room and booking from the database.
+    *
+    * @param esql the database to read from
+    * @return the filled index
+    * @throws java.sql.SQLException when the tables could not be read
+    */
+   public static AvailabilityIndex build (DBProject esql) throws SQLException {
+      AvailabilityIndex index = new AvailabilityIndex();
+      index.refresh(esql);
+      return index;
+   }//end build
+
+   /**
+    * Reads the rooms, and the bookings added since the last refresh.
+    *
+    * @param esql the database to read from
+    * @return the number of bookings read
+    * @throws java.sql.SQLException when the tables could not be read
+    */
+   public int refresh (DBProject esql) throws SQLException {
+      synchronized (this.refreshing) {
+         esql.forEachRow("SELECT r.hotelID, r.roomNo FROM Room r", rs -> addRoom(rs.getInt(1), rs.getInt(2)));
+         long low = (long) this.highest - OVERLAP_KEYS;
+         return esql.forEachRow(BOOKINGS_AFTER, rs -> {
+            this.highest = Math.max(this.highest, rs.getInt(1));
+            book(rs.getInt(2), rs.getInt(3), rs.getInt(4));
+         }, low < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) low);
+      }//end synchronized
+   }//end refresh
+
+   /**
+    * Records a new room.
+    */
+   public void addRoom (int hotelID, int roomNo) {
+      this.lock.writeLock().lock();
+      try {
+         RoomList list = this.rooms.get(hotelID);
+         if (list == null) {
+            list = new RoomList();
+            this.rooms.put(hotelID, list);
+         }//end if
+         list.add(roomNo);
+      }finally{
+         this.lock.writeLock().unlock();
+      }//end try
+   }//end addRoom
+
+   /**
+    * Records a committed booking of the room on the given day; a day already
+    * booked is not counted again.
+    */
+   public void book (int hotelID, int roomNo, int day) {
+      long key = LongHashMap.key(hotelID, roomNo);
+      this.lock.writeLock().lock();
+      try {
+         DayBitmap days = this.booked.get(key);
+         if (days == null) {
+            days = new DayBitmap();
+            this.booked.put(key, days);
+         }//end if
+         if (!days.contains(day)) {
+            days.add(day);
+            ++this.bookings;
+         }//end if
+      }finally{
+         this.lock.writeLock().unlock();
+      }//end try
+   }//end book
+
+   /**
+    * @return true when the room has no booking from first to last, both days included
+    */
+   public boolean isAvailable (int hotelID, int roomNo, int first, int last) {
+      this.lock.readLock().lock();
+      try {
+         DayBitmap days = this.booked.get(LongHashMap.key(hotelID, roomNo));
+         return days == null || !days.intersects(first, last);
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end isAvailable
+
+   /**
+    * @return the sorted room numbers of the hotel that have no booking from
+    *         first to last, both days included
+    */
+   public int[] availableRooms (int hotelID, int first, int last) {
+      this.lock.readLock().lock();
+      try {
+         RoomList list = this.rooms.get(hotelID);
+         if (list == null)
+            return new int[0];
+         int[] free = new int[list.size];
+         int n = 0;
+         for (int i = 0; i < list.size; ++i) {
+            DayBitmap days = this.booked.get(LongHashMap.key(hotelID, list.rooms[i]));
+            if (days == null || !days.intersects(first, last))
+               free[n++] = list.rooms[i];
+         }//end for
+         return Arrays.copyOf(free, n);
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end availableRooms
+
+   /**
+    * @return the number of rooms known for the hotel
+    */
+   public int roomCount (int hotelID) {
+      this.lock.readLock().lock();
+      try {
+         RoomList list = this.rooms.get(hotelID);
+         return list == null ? 0 : list.size;
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end roomCount
+
+   /**
+    * @return a short description of the index size
+    */
+   public String summary () {
+      this.lock.readLock().lock();
+      try {
+         return this.rooms.size() + " hotels, " + this.booked.size() + " booked rooms, " + this.bookings + " booked days";
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end summary
+
+}//end AvailabilityIndex
@@ -0,0 +1,406 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class runs the add operations of the menu from a stream of commands
+ * instead of the keyboard prompts, one command per line:
+ *
+ *    customer <fName> <lName> <address> <phone> <dob> <gender>
+ *    room     <hotelID> <roomNo> <roomType>
+ *    company  <cmpID> <name> <address> <certified y/n>
+ *    repair   <hotelID> <roomNo> <cmpID> <date> <repairType> <description ...>
+ *    book     <customerID> <hotelID> <roomNo> <date> <people> <price>
+ *    assign   <staffSSN> <hotelID> <roomNo>
+ *    request  <managerSSN> <hotelID> <roomNo> <repairID> <date> <description ...>
+ *
+ * Fields are separated by tabs when the line has one, otherwise by spaces,
+ * in which case only the trailing description may contain spaces.  A - stands
+ * for an empty optional field, dates are mm/dd/yyyy, and lines starting with
+ * # are skipped.  The checks are the ones the menu makes.
+ *
+ * Commands are taken GROUP_SIZE at a time.  The existence checks of a whole
+ * group go to the server in a few EXISTS statements, then the accepted rows
+ * are inserted as JDBC batches in one transaction.  Rooms and companies added
+ * earlier in the same group count as existing.
+ *
+ * One tab separated line is printed per command, in input order:
+ *
+ *    <line>  ok     <command>  <key>
+ *    <line>  error  <command>  <message>
+ */
+public class BatchRunner {
+
+   // commands validated and inserted together
+   static final int GROUP_SIZE = Integer.getInteger("dbproject.batch.groupSize", 500);
+   // EXISTS sub-queries sent in one statement
+   static final int CHECKS_PER_QUERY = 200;
+
+   // the insert statements in foreign key order, a group is inserted in this order
+   static final String[] INSERT_ORDER = {
+      DBProject.INSERT_CUSTOMER, DBProject.INSERT_COMPANY, DBProject.INSERT_ROOM, DBProject.INSERT_REPAIR,
+      DBProject.INSERT_BOOKING, DBProject.INSERT_ASSIGNED, DBProject.INSERT_REQUEST
+   };
+
+   /**
+    * One existence check of a command.  The command is rejected when the
+    * query finds a row and expected is false, or finds none and expected is
+    * true.  pending names a room or company that an earlier command of the
+    * same group adds.
+    */
+   static class Check {
+      final String sql;
+      final Object[] params;
+      final boolean expected;
+      final String pending;
+      final String message;
+
+      Check (String sql, Object[] params, boolean expected, String pending, String message) {
+         this.sql = sql;
+         this.params = params;
+         this.expected = expected;
+         this.pending = pending;
+         this.message = message;
+      }
+
+      String id () {
+         return this.sql + Arrays.toString(this.params);
+      }
+   }//end Check
+
+   /**
+    * One input line and what became of it.
+    */
+   static class Command {
+      final long line;
+      final String verb;
+      final List<Check> checks = new ArrayList<Check>();
+      String insert;
+      Object[] values;
+      KeyAllocator keys;
+      String creates;
+      String key;
+      String error;
+
+      Command (long line, String verb) {
+         this.line = line;
+         this.verb = verb;
+      }
+
+      Command check (String sql, boolean expected, String pending, String message, Object... params) {
+         this.checks.add(new Check(sql, params, expected, pending, message));
+         return this;
+      }
+   }//end Command
+
+   private final DBProject esql;
+   private long ok = 0, failed = 0;
+
+   public BatchRunner (DBProject esql) {
+      this.esql = esql;
+   }//end BatchRunner
+
+   /**
+    * Runs every command of the input and prints one result line per command.
+    *
+    * @param input the commands, one per line
+    * @param out where the results are written
+    * @return true when the input was read to the end
+    */
+   public boolean run (BufferedReader input, PrintWriter out) throws IOException, SQLException {
+      long start = System.currentTimeMillis();
+      List<Command> group = new ArrayList<Command>(GROUP_SIZE);
+      long lineNo = 0;
+      String line;
+      while ((line = input.readLine()) != null) {
+         ++lineNo;
+         String text = line.trim();
+         if (text.isEmpty() || text.startsWith("#"))
+            continue;
+         group.add(parse(lineNo, line));
+         if (group.size() == GROUP_SIZE) {
+            runGroup(group, out);
+            group.clear();
+         }//end if
+      }//end while
+      if (!group.isEmpty())
+         runGroup(group, out);
+      out.flush();
+      long elapsed = Math.max(1, System.currentTimeMillis() - start);
+      System.err.println(String.format("%d commands, %d ok, %d errors in %.1fs (%.0f commands/s)",
+            this.ok + this.failed, this.ok, this.failed, elapsed / 1000.0, (this.ok + this.failed) * 1000.0 / elapsed));
+      return true;
+   }//end run
+
+   /* Turns one line into a command with its checks and insert, or a command with an error */
+   Command parse (long lineNo, String line) {
+      String[] f = line.indexOf('\t') >= 0 ? line.trim().split("\t") : line.trim().split(" +");
+      Command c = new Command(lineNo, f[0].toLowerCase());
+      try {
+         switch (c.verb) {
+            case "customer": {
+               fields(f, 7);
+               String first = text(f[1], 30, "first name"), last = text(f[2], 30, "last name");
+               Long phone = empty(f[4]) ? null : Long.valueOf(f[4]);
+               Integer dob = empty(f[5]) ? null : DBProject.toDay(f[5]);
+               String gender = empty(f[6]) ? null : f[6];
+               if (gender != null && !Arrays.asList("Male", "Female", "Other").contains(gender))
+                  throw new IllegalArgumentException("gender must be Male, Female or Other");
+               c.insert = DBProject.INSERT_CUSTOMER;
+               c.keys = this.esql.customerKeys;
+               c.values = new Object[] {null, first, last, empty(f[3]) ? null : f[3], phone, dob, gender};
+               break;
+            }
+            case "room": {
+               fields(f, 4);
+               Integer hotel = DBProject.toKey(f[1]), room = DBProject.toKey(f[2]);
+               c.check(DBProject.HOTEL_EXISTS, true, null, "hotel ID not found", hotel)
+                .check(DBProject.ROOM_EXISTS, false, "room " + hotel + " " + room, "room number already exists for the hotel", hotel, room);
+               c.creates = "room " + hotel + " " + room;
+               c.insert = DBProject.INSERT_ROOM;
+               c.values = new Object[] {hotel, room, text(f[3], 10, "room type")};
+               c.key = hotel + "/" + room;
+               break;
+            }
+            case "company": {
+               fields(f, 5);
+               Integer company = DBProject.toKey(f[1]);
+               String cert = f[4].toLowerCase();
+               if (!Arrays.asList("y", "yes", "n", "no").contains(cert))
+                  throw new IllegalArgumentException("certified must be y or n");
+               c.check(DBProject.COMPANY_EXISTS, false, "company " + company, "company ID not unique", company);
+               c.creates = "company " + company;
+               c.insert = DBProject.INSERT_COMPANY;
+               c.values = new Object[] {company, text(f[2], 30, "company name"), empty(f[3]) ? null : f[3], cert.startsWith("y")};
+               c.key = company.toString();
+               break;
+            }
+            case "repair": {
+               fields(f, 7);
+               Integer hotel = DBProject.toKey(f[1]), room = DBProject.toKey(f[2]), company = DBProject.toKey(f[3]);
+               c.check(DBProject.HOTEL_EXISTS, true, null, "hotel ID not found", hotel)
+                .check(DBProject.ROOM_EXISTS, true, "room " + hotel + " " + room, "room not found for given hotel", hotel, room)
+                .check(DBProject.COMPANY_EXISTS, true, "company " + company, "company ID not found", company);
+               c.insert = DBProject.INSERT_REPAIR;
+               c.keys = this.esql.repairKeys;
+               c.values = new Object[] {null, hotel, room, company, DBProject.toDay(f[4]), rest(f, 6, line), text(f[5], 10, "repair type")};
+               break;
+            }
+            case "book": {
+               fields(f, 7);
+               Integer customer = DBProject.toKey(f[1]), hotel = DBProject.toKey(f[2]), room = DBProject.toKey(f[3]);
+               c.check(DBProject.CUSTOMER_EXISTS, true, null, "customer ID not found", customer)
+                .check(DBProject.HOTEL_EXISTS, true, null, "hotel ID not found", hotel)
+                .check(DBProject.ROOM_EXISTS, true, "room " + hotel + " " + room, "room not found for given hotel", hotel, room);
+               c.insert = DBProject.INSERT_BOOKING;
+               c.keys = this.esql.bookingKeys;
+               c.values = new Object[] {null, customer, hotel, room, DBProject.toDay(f[4]), DBProject.toKey(f[5]), new BigDecimal(f[6])};
+               break;
+            }
+            case "assign": {
+               fields(f, 4);
+               Integer staff = DBProject.toKey(f[1]), hotel = DBProject.toKey(f[2]), room = DBProject.toKey(f[3]);
+               c.check(DBProject.CLEANER_OF_HOTEL_EXISTS, true, null, "staff is not in house cleaning at the hotel", staff, hotel)
+                .check(DBProject.ROOM_EXISTS, true, "room " + hotel + " " + room, "room not found for given hotel", hotel, room);
+               c.insert = DBProject.INSERT_ASSIGNED;
+               c.keys = this.esql.assignedKeys;
+               c.values = new Object[] {null, staff, hotel, room};
+               break;
+            }
+            case "request": {
+               fields(f, 7);
+               Integer manager = DBProject.toKey(f[1]), hotel = DBProject.toKey(f[2]), room = DBProject.toKey(f[3]), repair = DBProject.toKey(f[4]);
+               int date = DBProject.toDay(f[5]);
+               String issue = rest(f, 6, line);
+               if (empty(issue))
+                  throw new IllegalArgumentException("description is empty");
+               c.check(DBProject.MANAGER_EXISTS, true, null, "staff is not a manager at the hotel", manager, hotel)
+                .check(DBProject.ROOM_EXISTS, true, "room " + hotel + " " + room, "room not found for given hotel", hotel, room)
+                .check(DBProject.REPAIR_EXISTS, true, null, "repair ID not found", repair)
+                .check(DBProject.REPAIR_ON_DATE_EXISTS, false, null, "repair is already scheduled for that date", repair, date);
+               c.insert = DBProject.INSERT_REQUEST;
+               c.keys = this.esql.requestKeys;
+               c.values = new Object[] {null, manager, repair, date, text(issue, 30, "description")};
+               break;
+            }
+            default:
+               throw new IllegalArgumentException("unknown command");
+         }//end switch
+      }catch (Exception e) {
+         c.error = e instanceof NumberFormatException ? "not a number: " + e.getMessage()
+               : e instanceof java.text.ParseException ? "date must be mm/dd/yyyy" : e.getMessage();
+      }//end try
+      return c;
+   }//end parse
+
+   private static void fields (String[] f, int count) {
+      if (f.length < count)
+         throw new IllegalArgumentException("expected " + (count - 1) + " fields, got " + (f.length - 1));
+   }
+
+   private static boolean empty (String value) {
+      return value == null || value.trim().isEmpty() || value.equals("-");
+   }
+
+   private static String text (String value, int max, String what) {
+      if (value.length() > max)
+         throw new IllegalArgumentException(what + " is over " + max + " characters");
+      return value;
+   }
+
+   /* The last field, which may hold spaces when the line is not tab separated */
+   private static String rest (String[] f, int from, String line) {
+      if (line.indexOf('\t') >= 0 || f.length == from + 1)
+         return f[from];
+      return String.join(" ", Arrays.copyOfRange(f, from, f.length));
+   }
+
+   /* Validates, keys, inserts and reports one group of commands */
+   private void runGroup (List<Command> group, PrintWriter out) throws SQLException {
+      // every distinct check of the group, answered a few statements at a time
+      Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+      List<Check> distinct = new ArrayList<Check>();
+      for (Command c : group) {
+         if (c.error != null)
+            continue;
+         for (Check k : c.checks) {
+            if (!ids.containsKey(k.id())) {
+               ids.put(k.id(), distinct.size());
+               distinct.add(k);
+            }//end if
+         }//end for
+      }//end for
+      boolean[] found = new boolean[distinct.size()];
+      for (int from = 0; from < distinct.size(); from += CHECKS_PER_QUERY) {
+         int to = Math.min(distinct.size(), from + CHECKS_PER_QUERY);
+         String[] sql = new String[to - from];
+         Object[][] params = new Object[to - from][];
+         for (int i = from; i < to; ++i) {
+            sql[i - from] = distinct.get(i).sql;
+            params[i - from] = distinct.get(i).params;
+         }//end for
+         System.arraycopy(this.esql.existsAll(sql, params), 0, found, from, to - from);
+      }//end for
+
+      // the verdicts, in input order so a command sees the rooms and companies added before it
+      Set<String> pending = new HashSet<String>();
+      for (Command c : group) {
+         if (c.error != null)
+            continue;
+         for (Check k : c.checks) {
+            boolean exists = found[ids.get(k.id())] || (k.pending != null && pending.contains(k.pending));
+            if (exists != k.expected) {
+               c.error = k.message;
+               break;
+            }//end if
+         }//end for
+         if (c.error == null) {
+            if (c.creates != null)
+               pending.add(c.creates);
+            if (c.keys != null) {
+               int key = c.keys.nextKey();
+               c.values[0] = key;
+               c.key = Integer.toString(key);
+            }//end if
+         }//end if
+      }//end for
+
+      insert(group);
+
+      for (Command c : group) {
+         if (c.error == null) {
+            ++this.ok;
+            out.print(c.line + "\tok\t" + c.verb + "\t" + c.key + "\n");
+         }else{
+            ++this.failed;
+            out.print(c.line + "\terror\t" + c.verb + "\t" + c.error.replace('\t', ' ').replace('\n', ' ') + "\n");
+         }//end if
+      }//end for
+      out.flush();
+   }//end runGroup
+
+   /* Inserts the accepted commands as one batch per table in a single transaction. When the batch fails the
+    * commands are retried one at a time so only the rows the server rejects are reported */
+   private void insert (List<Command> group) throws SQLException {
+      ConnectionPool.PooledConnection conn = this.esql.borrow();
+      Connection c = conn.connection();
+      c.setAutoCommit(false);
+      try {
+         try {
+            for (String sql : INSERT_ORDER) {
+               PreparedStatement stmt = null;
+               for (Command cmd : group) {
+                  if (cmd.error == null && sql.equals(cmd.insert)) {
+                     stmt = conn.prepare(sql, cmd.values);
+                     stmt.addBatch();
+                  }//end if
+               }//end for
+               if (stmt != null)
+                  stmt.executeBatch();
+            }//end for
+            // the bookings update the rollups in the same transaction
+            boolean booked = false;
+            for (Command cmd : group) {
+               if (cmd.error == null && DBProject.INSERT_BOOKING.equals(cmd.insert)) {
+                  Rollups.add(conn, cmd.values, true);
+                  booked = true;
+               }//end if
+            }//end for
+            if (booked) {
+               conn.prepare(Rollups.DAY_ADD).executeBatch();
+               conn.prepare(Rollups.MONTH_ADD).executeBatch();
+            }//end if
+            c.commit();
+            return;
+         }catch (SQLException e) {
+            c.rollback();
+            for (String sql : INSERT_ORDER)
+               conn.prepare(sql).clearBatch();
+            conn.prepare(Rollups.DAY_ADD).clearBatch();
+            conn.prepare(Rollups.MONTH_ADD).clearBatch();
+         }//end try
+
+         for (Command cmd : group) {
+            if (cmd.error != null)
+               continue;
+            try {
+               conn.prepare(cmd.insert, cmd.values).executeUpdate();
+               if (DBProject.INSERT_BOOKING.equals(cmd.insert))
+                  Rollups.add(conn, cmd.values, false);
+               c.commit();
+            }catch (SQLException e) {
+               c.rollback();
+               cmd.error = e.getMessage();
+            }//end try
+         }//end for
+      }finally{
+         c.setAutoCommit(true);
+         this.esql.release(conn);
+      }//end try
+   }//end insert
+
+}//end BatchRunner
@@ -0,0 +1,248 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class measures the menu operations of DBProject against a live
+ * database.  Each operation is run through its real menu method, with the
+ * keyboard input replaced by a fixed script, for a number of timed
+ * iterations after a warm up, and the throughput and the bytes allocated per
+ * operation are reported.
+ *
+ * Everything runs on one pooled connection inside a transaction that is
+ * rolled back after every iteration, so bookings made by the benchmark do not
+ * stay in the database.  The in-memory state of DBProject is not rolled
+ * back: the rooms bookRoom booked stay booked in the AvailabilityIndex, the
+ * bIDs it took from the KeyAllocator are skipped, and customers found in the
+ * database stay in CustomerNames.  The operations measured after bookRoom,
+ * such as availableRooms, therefore see rooms booked that Booking does not
+ * hold.
+ *
+ * An operation that fails, e.g. because its script was rejected, is reported
+ * as failed and the next operation is measured.
+ *
+ * Usage: java Bench <dbname> <port> <user> [operation ...]
+ */
+public class Bench {
+
+   // seconds per iteration
+   static final int TIME = Integer.getInteger("bench.time", 2);
+   // iterations run and thrown away before measuring
+   static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+   // iterations measured
+   static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+   // when set, one csv line per operation is appended to this file
+   static final String OUT = System.getProperty("bench.out");
+
+   /**
+    * One benchmarked operation: a menu method and the lines typed into it.
+    */
+   static class Operation {
+      final String name;
+      final String[] script;
+      final Step step;
+
+      Operation (String name, Step step, String... script) {
+         this.name = name;
+         this.step = step;
+         this.script = script;
+      }
+   }//end Operation
+
+   interface Step {
+      void run (DBProject esql) throws Exception;
+   }//end Step
+
+   /**
+    * Stands in for the keyboard.  Running past the end of the script means
+    * the operation rejected an input and prompted again, which is reported
+    * instead of looping forever.
+    */
+   static class Script extends BufferedReader {
+      private String[] lines;
+      private int next;
+
+      Script () {
+         super(new StringReader(""));
+      }
+
+      void reset (String[] lines) {
+         this.lines = lines;
+         this.next = 0;
+      }
+
+      boolean finished () {
+         return this.next == this.lines.length;
+      }
+
+      @Override
+      public String readLine () {
+         if (this.next == this.lines.length)
+            throw new ScriptExhausted(Arrays.toString(this.lines));
+         return this.lines[this.next++];
+      }
+   }//end Script
+
+   // an Error so the catch (Exception e) blocks of the menu methods do not swallow it
+   static class ScriptExhausted extends Error {
+      private static final long serialVersionUID = 1L;
+
+      ScriptExhausted (String script) {
+         super("Input was rejected, script " + script + " ran out");
+      }
+   }//end ScriptExhausted
+
+   private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+      public void write (int b) {}
+      public void write (byte[] b, int off, int len) {}
+   });
+
+   private static final Writer DISCARD_ROWS = new Writer() {
+      public void write (char[] cbuf, int off, int len) {}
+      public void flush () {}
+      public void close () {}
+   };
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 3) {
+         System.err.println("Usage: java [-Dbench.time=2 -Dbench.warmup=3 -Dbench.iterations=5 -Dbench.out=results.csv] "
+               + Bench.class.getName() + " <dbname> <port> <user> [operation ...]");
+         return;
+      }//end if
+      Class.forName("org.postgresql.Driver");
+      DBProject esql = new DBProject(args[0], args[1], args[2], "");
+      PrintStream console = System.out;
+      try {
+         esql.availability();
+         List<Operation> operations = operations(esql);
+         List<String> wanted = Arrays.asList(args).subList(3, args.length);
+         console.println(String.format("%-28s %12s %10s %12s %12s", "Benchmark", "ops/s", "error", "alloc B/op", "alloc MB/s"));
+         for (Operation op : operations) {
+            if (!wanted.isEmpty() && !wanted.contains(op.name))
+               continue;
+            try {
+               measure(esql, op, console);
+            }catch (Exception | ScriptExhausted e) {
+               console.println(String.format("%-28s failed: %s", op.name, e.getMessage()));
+            }//end try
+         }//end for
+      }finally{
+         System.setOut(console);
+         esql.cleanup();
+      }//end try
+   }//end main
+
+   /* The benchmarked operations, using keys found in the database */
+   static List<Operation> operations (DBProject esql) throws Exception {
+      final String[] room = {"1", "1"};
+      final String[] customer = {"1", "", ""};
+      final String[] days = {"01/01/2015", "12/31/2015"};
+      esql.forEachRow("SELECT r.hotelID, r.roomNo FROM Room r LIMIT 1", rs -> { room[0] = rs.getString(1); room[1] = rs.getString(2); });
+      // a customer whose name no one else has, so readCustomer does not ask to choose by ID
+      esql.forEachRow("SELECT c.customerID, c.fName, c.lName FROM Customer c WHERE NOT EXISTS (SELECT 1 FROM Customer d WHERE lower(trim(d.lName)) = lower(trim(c.lName)) "
+            + "AND lower(trim(d.fName)) = lower(trim(c.fName)) AND d.customerID <> c.customerID) LIMIT 1",
+            rs -> { customer[0] = rs.getString(1); customer[1] = rs.getString(2).trim(); customer[2] = rs.getString(3).trim(); });
+      esql.forEachRow("SELECT " + DateCodec.column("MAX(b.bookingDate)") + " - 30, " + DateCodec.column("MAX(b.bookingDate)") + " FROM Booking b HAVING COUNT(*) > 0",
+            rs -> { days[0] = DateCodec.format(rs.getInt(1)); days[1] = DateCodec.format(rs.getInt(2)); });
+      final Object[] checked = {DBProject.toKey(room[0]), DBProject.toKey(room[0]), DBProject.toKey(room[1]), DBProject.toKey(customer[0])};
+
+      List<Operation> ops = new ArrayList<Operation>();
+      ops.add(new Operation("bookRoom", DBProject::bookRoom, customer[0], room[0], room[1], days[1], "2", "120.00"));
+      ops.add(new Operation("validation", e -> e.existsAll(
+            new String[] { DBProject.HOTEL_EXISTS, DBProject.ROOM_EXISTS, DBProject.CUSTOMER_EXISTS },
+            new Object[][] { {checked[0]}, {checked[1], checked[2]}, {checked[3]} })));
+      ops.add(new Operation("availableRooms", DBProject::numberOfAvailableRooms, room[0], days[0], days[1]));
+      ops.add(new Operation("topKRoomPrice", DBProject::topKHighestRoomPriceForADateRange, days[0], days[1], "10"));
+      ops.add(new Operation("topKCustomerPrice", DBProject::topKHighestPriceBookingsForACustomer, customer[1], customer[2], "10"));
+      ops.add(new Operation("topKCompanies", DBProject::topKMaintenanceCompany, "10"));
+      ops.add(new Operation("repairsPerYearRoom", DBProject::numberOfRepairsForEachRoomPerYear, room[0], room[1]));
+      ops.add(new Operation("repairsPerYearHotel", DBProject::numberOfRepairsForEachRoomPerYear, room[0], ""));
+      ops.add(new Operation("repairsPerYearAll", DBProject::numberOfRepairsForEachRoomPerYear, "ALL"));
+      return ops;
+   }//end operations
+
+   /* Runs the warm up and measured iterations of one operation and prints its line */
+   static void measure (DBProject esql, Operation op, PrintStream console) throws Exception {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      long self = Thread.currentThread().getId();
+      Script script = new Script();
+      BufferedReader keyboard = DBProject.in;
+      RowFormatter.get().redirect(DISCARD_ROWS);
+      System.setOut(DISCARD);
+      DBProject.in = script;
+
+      ConnectionPool.PooledConnection conn = esql.borrow();
+      Connection c = conn.connection();
+      c.setAutoCommit(false);
+      double[] rates = new double[ITERATIONS];
+      long ops = 0, nanos = 0, bytes = 0;
+      try {
+         for (int i = -WARMUP; i < ITERATIONS; ++i) {
+            long n = 0;
+            long allocated = threads.getThreadAllocatedBytes(self);
+            long start = System.nanoTime();
+            long end = start + TIME * 1000000000L;
+            long now;
+            do {
+               script.reset(op.script);
+               op.step.run(esql);
+               if (!script.finished())
+                  throw new IllegalStateException(op.name + " did not read its whole script " + Arrays.toString(op.script));
+               ++n;
+            }while ((now = System.nanoTime()) < end);
+            allocated = threads.getThreadAllocatedBytes(self) - allocated;
+            c.rollback();
+            if (i >= 0) {
+               rates[i] = n * 1e9 / (now - start);
+               ops += n;
+               nanos += now - start;
+               bytes += allocated;
+            }//end if
+         }//end for
+      }finally{
+         c.rollback();
+         c.setAutoCommit(true);
+         esql.release(conn);
+         DBProject.in = keyboard;
+         System.setOut(console);
+         RowFormatter.get().redirect(null);
+      }//end try
+
+      double mean = 0, var = 0;
+      for (double r : rates)
+         mean += r / rates.length;
+      for (double r : rates)
+         var += (r - mean) * (r - mean) / Math.max(1, rates.length - 1);
+      double perOp = ops == 0 ? 0 : (double) bytes / ops;
+      double mbPerSec = nanos == 0 ? 0 : bytes * 1e9 / nanos / (1 << 20);
+      console.println(String.format("%-28s %12.1f %10.1f %12.0f %12.2f", op.name, mean, Math.sqrt(var), perOp, mbPerSec));
+      if (OUT != null) {
+         try (PrintWriter out = new PrintWriter(new FileWriter(OUT, true))) {
+            out.println(String.format("%d,%s,%.1f,%.1f,%.0f,%.2f", System.currentTimeMillis(), op.name, mean, Math.sqrt(var), perOp, mbPerSec));
+         }//end try
+      }//end if
+   }//end measure
+
+}//end Bench
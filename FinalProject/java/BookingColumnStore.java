@@ -0,0 +1,464 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * This class keeps a copy of the Booking columns the price reports read, so
+ * reports 11 to 13 run in the program instead of on the database.  Every
+ * column is an int per booking in its own memory mapped file under DIR:
+ * bID, customer, hotelID, roomNo, the booking day (see DateCodec), the price
+ * in cents and the room type, stored as its number in types.txt.  The files
+ * stay outside the Java heap and are reused by the next run.
+ *
+ * The copy is refreshed with the bookings whose bID is above the highest one
+ * it holds, less OVERLAP_KEYS: keys come in blocks (see KeyAllocator), so a
+ * booking committed late can have a lower bID than ones already copied.
+ * Bookings committed more than OVERLAP_KEYS keys late are only picked up by
+ * the analytics rebuild mode.  So are changes to bookings already copied:
+ * the copy keeps the price, room and date a booking had when it was copied,
+ * and keeps deleted bookings, so reports 11 to 13 count them until the
+ * rebuild.  The program itself only inserts bookings.
+ *
+ * A refresh runs before a report when the copy is older than REFRESH_MS,
+ * except during PEAK_HOURS, when reports use the copy as it is and the
+ * database is left alone.
+ *
+ * Several runs of the program can share DIR: a refresh holds a lock on
+ * meta.bin and first reads what the other runs copied.  The rebuild mode
+ * rewrites the files from the start, so it should run while the menu is
+ * closed.
+ *
+ * The reports split the rows into slices of SLICE_ROWS that are scanned in
+ * parallel, each keeping its own top k, and merge the slices at the end.
+ */
+public class BookingColumnStore {
+
+   // reports 11 to 13 use the copy when -Ddbproject.analytics=true
+   static final boolean ENABLED = Boolean.getBoolean("dbproject.analytics");
+   static final File DIR = new File(System.getProperty("dbproject.analytics.dir", "../analytics"));
+   static final long REFRESH_MS = Long.getLong("dbproject.analytics.refreshSeconds", 60L) * 1000;
+   static final int OVERLAP_KEYS = Integer.getInteger("dbproject.analytics.overlapKeys", 100000);
+   // hours without refreshes, e.g. 7-10,15-20 for 7:00 to 10:00 and 15:00 to 20:00
+   static final String PEAK_HOURS = System.getProperty("dbproject.analytics.peakHours", "");
+
+   static final String BOOKINGS_AFTER = "SELECT b.bID, b.customer, b.hotelID, b.roomNo, " + DateCodec.column("b.bookingDate")
+         + ", CAST(b.price * 100 AS integer), r.roomType FROM Booking b LEFT JOIN Room r ON r.hotelID = b.hotelID AND r.roomNo = b.roomNo "
+         + "WHERE b.bID > ? ORDER BY b.bID";
+
+   private static final int SLICE_ROWS = 1 << 16;
+   private static final String[] COLUMNS = {"bid", "customer", "hotel", "room", "day", "cents", "type"};
+   private static final int BID = 0, CUSTOMER = 1, HOTEL = 2, ROOM = 3, DAY = 4, CENTS = 5, TYPE = 6;
+   // meta.bin holds MAGIC, rows, the highest bID and the time of the last refresh
+   private static final int MAGIC = 0x424b4353;
+
+   /* The columns as of one refresh, which readers keep while the next refresh appends */
+   private static class Columns {
+      final IntBuffer[] data;
+      final int rows;
+
+      Columns (IntBuffer[] data, int rows) {
+         this.data = data;
+         this.rows = rows;
+      }
+   }//end Columns
+
+   /* Selects the rows a report reads */
+   private interface RowFilter {
+      boolean test (IntBuffer[] data, int row);
+   }//end RowFilter
+
+   private final DBProject esql;
+   private final FileChannel[] files = new FileChannel[COLUMNS.length];
+   private final IntBuffer[] mapped = new IntBuffer[COLUMNS.length];
+   private final FileChannel metaFile;
+   private final MappedByteBuffer meta;
+   // read by the reports while a refresh adds to it
+   private final List<String> types = new CopyOnWriteArrayList<String>();
+   private volatile Columns columns;
+   private volatile long refreshedAt;
+   // rows written by the running refresh, published in columns once it is done
+   private int size;
+   private int capacity;
+   private int highest;
+
+   private BookingColumnStore (DBProject esql) throws IOException {
+      this.esql = esql;
+      if (!DIR.isDirectory() && !DIR.mkdirs())
+         throw new IOException("cannot create " + DIR);
+      this.metaFile = new RandomAccessFile(new File(DIR, "meta.bin"), "rw").getChannel();
+      this.meta = this.metaFile.map(FileChannel.MapMode.READ_WRITE, 0, 32);
+      for (int i = 0; i < COLUMNS.length; ++i)
+         this.files[i] = new RandomAccessFile(new File(DIR, COLUMNS[i] + ".col"), "rw").getChannel();
+      this.capacity = SLICE_ROWS;
+      map();
+      reload();
+   }
+
+   /* Reads the state of the copy from meta.bin and types.txt, which another run may have refreshed */
+   private void reload () throws IOException {
+      boolean valid = this.meta.getInt(0) == MAGIC;
+      this.size = valid ? this.meta.getInt(4) : 0;
+      this.highest = valid ? this.meta.getInt(8) : Integer.MIN_VALUE;
+      this.refreshedAt = valid ? this.meta.getLong(16) : 0;
+      if (this.capacity < this.size) {
+         while (this.capacity < this.size)
+            this.capacity <<= 1;
+         map();
+      }//end if
+      File typeFile = new File(DIR, "types.txt");
+      if (valid && typeFile.exists()) {
+         List<String> stored = Files.readAllLines(typeFile.toPath(), StandardCharsets.UTF_8);
+         // the list only grows, a reload adds the types another run found
+         for (int i = this.types.size(); i < stored.size(); ++i)
+            this.types.add(stored.get(i));
+      }//end if
+      this.columns = new Columns(this.mapped.clone(), this.size);
+   }//end reload
+
+   /**
+    * Opens the copy in DIR, creating it when it does not exist yet.  The
+    * copy is not refreshed, see refreshIfDue.
+    *
+    * @param esql the database the bookings are copied from
+    * @return the opened copy
+    * @throws java.io.IOException when the files could not be mapped
+    */
+   public static BookingColumnStore open (DBProject esql) throws IOException {
+      return new BookingColumnStore(esql);
+   }//end open
+
+   /* Maps every column with room for capacity rows, growing the files */
+   private void map () throws IOException {
+      for (int i = 0; i < COLUMNS.length; ++i)
+         this.mapped[i] = this.files[i].map(FileChannel.MapMode.READ_WRITE, 0, 4L * this.capacity).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+   }//end map
+
+   /**
+    * Refreshes the copy when it is older than REFRESH_MS, unless it is peak
+    * time.
+    */
+   public void refreshIfDue () throws SQLException, IOException {
+      if (System.currentTimeMillis() - this.refreshedAt >= REFRESH_MS && !peak(LocalTime.now().getHour()))
+         refresh(false);
+   }//end refreshIfDue
+
+   /* True when the hour is in one of the PEAK_HOURS ranges */
+   static boolean peak (int hour) {
+      for (String range : PEAK_HOURS.split(",")) {
+         int dash = range.indexOf('-');
+         if (dash < 0)
+            continue;
+         int from = Integer.parseInt(range.substring(0, dash).trim()), to = Integer.parseInt(range.substring(dash + 1).trim());
+         if (from <= to ? hour >= from && hour < to : hour >= from || hour < to)
+            return true;
+      }//end for
+      return false;
+   }//end peak
+
+   /**
+    * Copies the bookings added since the last refresh, or every booking.
+    *
+    * @param full true to drop the copy and read the whole table
+    * @return the number of bookings added to the copy
+    */
+   public synchronized int refresh (boolean full) throws SQLException, IOException {
+      FileLock lock = this.metaFile.lock();
+      try {
+         reload();
+         return copy(full);
+      }finally{
+         lock.release();
+      }//end try
+   }//end refresh
+
+   private int copy (boolean full) throws SQLException, IOException {
+      if (full) {
+         this.size = 0;
+         this.highest = Integer.MIN_VALUE;
+         this.types.clear();
+      }//end if
+      int before = this.size;
+      long low = (long) this.highest - OVERLAP_KEYS;
+      // the bIDs of the window already copied, so rows read again are skipped
+      IntBuffer bids = this.mapped[BID];
+      int[] present = new int[16];
+      int n = 0;
+      for (int row = 0; row < before; ++row) {
+         int bid = bids.get(row);
+         if (bid > low) {
+            if (n == present.length)
+               present = Arrays.copyOf(present, n * 2);
+            present[n++] = bid;
+         }//end if
+      }//end for
+      final int[] copied = Arrays.copyOf(present, n);
+      Arrays.sort(copied);
+      final List<String> typesBefore = new ArrayList<String>(this.types);
+
+      this.esql.forEachRow(BOOKINGS_AFTER, rs -> {
+         int bid = rs.getInt(1);
+         if (Arrays.binarySearch(copied, bid) >= 0)
+            return;
+         try {
+            if (this.size == this.capacity) {
+               this.capacity <<= 1;
+               map();
+            }//end if
+         }catch (IOException e) {
+            throw new SQLException("Error growing the booking columns: " + e.getMessage());
+         }//end try
+         int row = this.size;
+         this.mapped[BID].put(row, bid);
+         this.mapped[CUSTOMER].put(row, rs.getInt(2));
+         this.mapped[HOTEL].put(row, rs.getInt(3));
+         this.mapped[ROOM].put(row, rs.getInt(4));
+         this.mapped[DAY].put(row, rs.getInt(5));
+         this.mapped[CENTS].put(row, rs.getInt(6));
+         this.mapped[TYPE].put(row, type(rs.getString(7)));
+         this.size = row + 1;
+         this.highest = Math.max(this.highest, bid);
+      }, low < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) low);
+
+      // the rows reach the files before meta.bin counts them, so a crash leaves at worst uncounted rows
+      for (FileChannel file : this.files)
+         file.force(false);
+      if (!this.types.equals(typesBefore))
+         Files.write(new File(DIR, "types.txt").toPath(), this.types, StandardCharsets.UTF_8);
+      this.refreshedAt = System.currentTimeMillis();
+      this.meta.putInt(4, this.size).putInt(8, this.highest).putLong(16, this.refreshedAt).putInt(0, MAGIC);
+      this.meta.force();
+      this.columns = new Columns(this.mapped.clone(), this.size);
+      return this.size - before;
+   }//end copy
+
+   private int type (String roomType) {
+      if (roomType == null)
+         return -1;
+      String type = roomType.trim();
+      int code = this.types.indexOf(type);
+      if (code < 0) {
+         code = this.types.size();
+         this.types.add(type);
+      }//end if
+      return code;
+   }//end type
+
+   /* Returns the rows of the top k prices the filter selects, highest first, and adds the number of selected rows to qualifying */
+   private static int[] topByPrice (Columns c, int k, RowFilter filter, LongAdder qualifying) {
+      int slices = (c.rows + SLICE_ROWS - 1) / SLICE_ROWS;
+      long[][] tops = IntStream.range(0, slices).parallel().mapToObj(slice -> {
+         IntBuffer[] data = c.data;
+         IntBuffer cents = data[CENTS];
+         // a min heap of price << 32 | row, so the lowest of the top k is replaced first
+         long[] heap = new long[Math.min(k, SLICE_ROWS)];
+         int size = 0, selected = 0;
+         for (int row = slice * SLICE_ROWS, end = Math.min(c.rows, row + SLICE_ROWS); row < end; ++row) {
+            if (!filter.test(data, row))
+               continue;
+            ++selected;
+            long key = ((long) cents.get(row) << 32) | row;
+            if (size < heap.length) {
+               heap[size] = key;
+               siftUp(heap, size++);
+            }else if (heap.length > 0 && key > heap[0]) {
+               heap[0] = key;
+               siftDown(heap, size);
+            }//end if
+         }//end for
+         qualifying.add(selected);
+         return Arrays.copyOf(heap, size);
+      }).toArray(long[][]::new);
+
+      int total = 0;
+      for (long[] top : tops)
+         total += top.length;
+      long[] all = new long[total];
+      int at = 0;
+      for (long[] top : tops) {
+         System.arraycopy(top, 0, all, at, top.length);
+         at += top.length;
+      }//end for
+      Arrays.sort(all);
+      int[] rows = new int[Math.min(k, all.length)];
+      for (int i = 0; i < rows.length; ++i)
+         rows[i] = (int) all[all.length - 1 - i];
+      return rows;
+   }//end topByPrice
+
+   private static void siftUp (long[] heap, int i) {
+      while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+         long t = heap[i];
+         heap[i] = heap[(i - 1) / 2];
+         heap[(i - 1) / 2] = t;
+         i = (i - 1) / 2;
+      }//end while
+   }//end siftUp
+
+   private static void siftDown (long[] heap, int size) {
+      int i = 0;
+      while (true) {
+         int least = i, left = 2 * i + 1, right = left + 1;
+         if (left < size && heap[left] < heap[least])
+            least = left;
+         if (right < size && heap[right] < heap[least])
+            least = right;
+         if (least == i)
+            return;
+         long t = heap[i];
+         heap[i] = heap[least];
+         heap[least] = t;
+         i = least;
+      }//end while
+   }//end siftDown
+
+   private static String price (long cents) {
+      return BigDecimal.valueOf(cents, 2).toPlainString();
+   }//end price
+
+   private static String day (int day) {
+      return DateCodec.appendIso(new StringBuilder(10), day).toString();
+   }//end day
+
+   private static void header (RowFormatter out, String... columns) throws IOException {
+      for (String column : columns)
+         out.cell(column);
+      out.endRow();
+   }//end header
+
+   /**
+    * Prints the k most expensive bookings from one day to another, both
+    * included, the same as DBProject.TOP_K_BOOKED_ROOMS.
+    *
+    * @return the number of rows printed
+    */
+   public int printTopRooms (int from, int to, int k) throws SQLException, IOException {
+      refreshIfDue();
+      Columns c = this.columns;
+      LongAdder qualifying = new LongAdder();
+      int[] rows = topByPrice(c, k, (data, row) -> {
+         int day = data[DAY].get(row);
+         return day >= from && day <= to;
+      }, qualifying);
+      RowFormatter out = RowFormatter.get();
+      if (rows.length > 0)
+         header(out, "roomtype", "roomno", "price", "bookingdate");
+      for (int row : rows) {
+         int type = c.data[TYPE].get(row);
+         out.cell(type < 0 || type >= this.types.size() ? null : this.types.get(type));
+         out.cell(Integer.toString(c.data[ROOM].get(row)));
+         out.cell(price(c.data[CENTS].get(row)));
+         out.cell(day(c.data[DAY].get(row)));
+         out.endRow();
+      }//end for
+      out.flush();
+      if (rows.length > 0)
+         System.out.println(String.format("Returned %d of %d qualifying rows", rows.length, qualifying.sum()));
+      return rows.length;
+   }//end printTopRooms
+
+   /**
+    * Prints the k most expensive bookings of a customer, the same as
+    * DBProject.TOP_K_CUSTOMER_BOOKINGS.
+    *
+    * @return the number of rows printed
+    */
+   public int printTopCustomerBookings (int customerID, int k) throws SQLException, IOException {
+      refreshIfDue();
+      Columns c = this.columns;
+      LongAdder qualifying = new LongAdder();
+      int[] rows = topByPrice(c, k, (data, row) -> data[CUSTOMER].get(row) == customerID, qualifying);
+      CustomerNames.Match name = this.esql.customerNames().customer(customerID);
+      RowFormatter out = RowFormatter.get();
+      if (rows.length > 0)
+         header(out, "fname", "lname", "price", "bookingdate", "hotelid");
+      for (int row : rows) {
+         out.cell(name == null ? null : name.fName);
+         out.cell(name == null ? null : name.lName);
+         out.cell(price(c.data[CENTS].get(row)));
+         out.cell(day(c.data[DAY].get(row)));
+         out.cell(Integer.toString(c.data[HOTEL].get(row)));
+         out.endRow();
+      }//end for
+      out.flush();
+      if (rows.length > 0)
+         System.out.println(String.format("Returned %d of %d qualifying rows", rows.length, qualifying.sum()));
+      return rows.length;
+   }//end printTopCustomerBookings
+
+   /**
+    * Prints what the customer spent at the hotel from one day to another,
+    * both included, the same as DBProject.CUSTOMER_TOTAL_COST.
+    *
+    * @return the number of rows printed
+    */
+   public int printTotalCost (int hotelID, int customerID, int from, int to) throws SQLException, IOException {
+      refreshIfDue();
+      Columns c = this.columns;
+      int slices = (c.rows + SLICE_ROWS - 1) / SLICE_ROWS;
+      LongAdder bookings = new LongAdder(), cents = new LongAdder();
+      IntStream.range(0, slices).parallel().forEach(slice -> {
+         IntBuffer customer = c.data[CUSTOMER], hotel = c.data[HOTEL], day = c.data[DAY], price = c.data[CENTS];
+         long n = 0, sum = 0;
+         for (int row = slice * SLICE_ROWS, end = Math.min(c.rows, row + SLICE_ROWS); row < end; ++row) {
+            if (customer.get(row) == customerID && hotel.get(row) == hotelID) {
+               int d = day.get(row);
+               if (d >= from && d <= to) {
+                  ++n;
+                  sum += price.get(row);
+               }//end if
+            }//end if
+         }//end for
+         bookings.add(n);
+         cents.add(sum);
+      });
+      if (bookings.sum() == 0)
+         return 0;
+      CustomerNames.Match name = this.esql.customerNames().customer(customerID);
+      RowFormatter out = RowFormatter.get();
+      header(out, "fname", "lname", "sum");
+      out.cell(name == null ? null : name.fName);
+      out.cell(name == null ? null : name.lName);
+      out.cell(price(cents.sum()));
+      out.endRow();
+      out.flush();
+      return 1;
+   }//end printTotalCost
+
+   /**
+    * @return a short description of the copy
+    */
+   public String summary () {
+      long age = this.refreshedAt == 0 ? -1 : (System.currentTimeMillis() - this.refreshedAt) / 1000;
+      return this.columns.rows + " bookings in " + DIR + (age < 0 ? ", never refreshed" : ", refreshed " + age + "s ago");
+   }//end summary
+
+}//end BookingColumnStore
@@ -0,0 +1,403 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * This class lets bookRoom acknowledge a booking once it is written to a
+ * local journal instead of once the database committed it.  The journal is
+ * a memory mapped file of fixed size records, forced to disk before the
+ * booking is acknowledged; a flusher thread then inserts the bookings into
+ * Booking in batches of up to BATCH_ROWS, one transaction per batch, so a
+ * burst of bookings costs the database one commit per batch instead of one
+ * per booking.  Write-behind is turned on with -Ddbproject.writeBehind=true.
+ *
+ * The header of the file holds MAGIC, the generation and the number of
+ * records already in the database.  Every record carries a checksum of its
+ * fields and of the generation, so on startup the records after the flushed
+ * ones are read up to the first one that was not fully written, and the
+ * flusher inserts them again.  A booking is inserted with ON CONFLICT DO
+ * NOTHING on its bID, and the rollups only count the rows actually inserted,
+ * so a batch committed just before a crash, whose header update was lost,
+ * is replayed without effect.  Once every record is flushed and the file is
+ * full it starts over with the next generation, which makes the old records
+ * invalid.
+ *
+ * The hotel, room and customer of a booking are checked before it is
+ * journaled, see bookRoom.  A booking the database still refuses, e.g. for a
+ * customer deleted in the meantime, is printed and written to the
+ * REJECTED file; a booking counts as refused when its insert fails while
+ * the connection still answers a query, other failures are retried.  The
+ * reports read the database, and the room is marked booked in the
+ * availability index once the booking is inserted, so they see a journaled
+ * booking once it is flushed, at most FLUSH_MS later unless the database is
+ * down.
+ */
+public class BookingJournal {
+
+   static final boolean ENABLED = Boolean.getBoolean("dbproject.writeBehind");
+   static final File FILE = new File(System.getProperty("dbproject.journal.file", "../journal/bookings.bin"));
+   static final File REJECTED = new File(FILE.getPath() + ".rejected");
+   // records the file holds before it starts over
+   static final int CAPACITY = Integer.getInteger("dbproject.journal.records", 1 << 20);
+   static final int BATCH_ROWS = Integer.getInteger("dbproject.journal.batchRows", 5000);
+   // longest wait for a batch to fill up
+   static final long FLUSH_MS = Long.getLong("dbproject.journal.flushMs", 200L);
+   // wait before a batch is retried when the database could not be reached
+   static final long RETRY_MS = Long.getLong("dbproject.journal.retryMs", 5000L);
+   // longest wait for the last bookings to be flushed on exit
+   static final long CLOSE_MS = Long.getLong("dbproject.journal.closeSeconds", 30L) * 1000;
+
+   // inserts one booking unless its bID is already there, and adds it to the rollups when it was inserted
+   static final String INSERT = "WITH inserted AS (" + DBProject.INSERT_BOOKING + " ON CONFLICT DO NOTHING RETURNING *), m0 AS ("
+         + Rollups.DAY_FROM_INSERTED + ") " + Rollups.MONTH_FROM_INSERTED;
+
+   private static final int MAGIC = 0x424b4a4c;
+   private static final int HEADER = 64;
+   // bID, customer, hotelID, roomNo, day, noOfPeople, price in cents and the checksum
+   private static final int FIELDS = 7, RECORD = (FIELDS + 1) * 4;
+
+   private final DBProject esql;
+   private final FileChannel file;
+   private final MappedByteBuffer buffer;
+   private final Thread flusher;
+   private int generation;
+   // records in the file, and the first of them not yet in the database
+   private int written, flushed;
+   // records appended since the journal was opened, and how many of them are known to be on disk, see sync
+   private long appended, forced;
+   private final Object forceLock = new Object();
+   private long inserted, rejected;
+   private boolean closing;
+   private String lastError;
+
+   private BookingJournal (DBProject esql) throws IOException {
+      this.esql = esql;
+      File dir = FILE.getAbsoluteFile().getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs())
+         throw new IOException("cannot create " + dir);
+      this.file = new RandomAccessFile(FILE, "rw").getChannel();
+      this.buffer = this.file.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) CAPACITY * RECORD);
+      if (this.buffer.getInt(0) == MAGIC) {
+         this.generation = this.buffer.getInt(4);
+         this.flushed = Math.min(this.buffer.getInt(8), CAPACITY);
+      }else {
+         this.generation = 1;
+         this.flushed = 0;
+         writeHeader();
+      }//end if
+      // the records after the flushed ones up to the first torn or stale one are still to be inserted
+      this.written = this.flushed;
+      while (this.written < CAPACITY && valid(this.written))
+         ++this.written;
+      this.flusher = new Thread(this::flushLoop, "booking-journal");
+      this.flusher.setDaemon(true);
+   }
+
+   /**
+    * Opens the journal and starts the thread flushing it, which first inserts
+    * the bookings a previous run journaled but did not flush.
+    *
+    * @return the opened journal
+    * @throws java.io.IOException when the file could not be mapped
+    */
+   public static BookingJournal open (DBProject esql) throws IOException {
+      BookingJournal journal = new BookingJournal(esql);
+      journal.flusher.start();
+      return journal;
+   }//end open
+
+   /**
+    * Journals one booking, and returns once it is on disk.  Waits for the
+    * flusher when the file is full.
+    *
+    * @throws java.io.IOException when the journal is closed
+    */
+   public void append (int bID, int customer, int hotelID, int roomNo, int day, int noOfPeople, int cents) throws IOException {
+      long end;
+      synchronized (this) {
+         while (this.written == CAPACITY) {
+            if (this.closing)
+               throw new IOException("the booking journal is closed");
+            if (this.flushed == CAPACITY) {
+               reset();
+               break;
+            }//end if
+            notifyAll();
+            try {
+               wait(FLUSH_MS);
+            }catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               throw new IOException("interrupted while the booking journal was full");
+            }//end try
+         }//end while
+         if (this.closing)
+            throw new IOException("the booking journal is closed");
+         int at = HEADER + this.written * RECORD;
+         int[] fields = {bID, customer, hotelID, roomNo, day, noOfPeople, cents};
+         for (int i = 0; i < FIELDS; ++i)
+            this.buffer.putInt(at + i * 4, fields[i]);
+         this.buffer.putInt(at + FIELDS * 4, checksum(this.generation, fields));
+         end = ++this.appended;
+         // wakes the flusher when the journal was empty and when a batch is full
+         int pending = ++this.written - this.flushed;
+         if (pending == 1 || pending >= BATCH_ROWS)
+            notifyAll();
+      }//end synchronized
+      sync(end);
+   }//end append
+
+   /* Forces the file up to the appended record end; the bookings appended while another thread forces are forced together by the next one */
+   private void sync (long end) {
+      synchronized (this.forceLock) {
+         if (this.forced >= end)
+            return;
+         long target;
+         synchronized (this) {
+            target = this.appended;
+         }//end synchronized
+         this.buffer.force();
+         this.forced = target;
+      }//end synchronized
+   }//end sync
+
+   /* Starts the file over with the next generation, once every record is flushed */
+   private void reset () {
+      ++this.generation;
+      this.written = 0;
+      this.flushed = 0;
+      writeHeader();
+   }//end reset
+
+   private void writeHeader () {
+      this.buffer.putInt(0, MAGIC);
+      this.buffer.putInt(4, this.generation);
+      this.buffer.putInt(8, this.flushed);
+      this.buffer.force();
+   }//end writeHeader
+
+   private boolean valid (int record) {
+      int at = HEADER + record * RECORD;
+      int[] fields = new int[FIELDS];
+      for (int i = 0; i < FIELDS; ++i)
+         fields[i] = this.buffer.getInt(at + i * 4);
+      return this.buffer.getInt(at + FIELDS * 4) == checksum(this.generation, fields);
+   }//end valid
+
+   /* Never 0, so a record of the zero filled file is never valid */
+   private static int checksum (int generation, int[] fields) {
+      int h = 0x811c9dc5 ^ generation;
+      for (int field : fields) {
+         h = (h ^ field) * 0x01000193;
+         h ^= h >>> 15;
+      }//end for
+      return h | 1;
+   }//end checksum
+
+   private void flushLoop () {
+      while (true) {
+         int from, to;
+         synchronized (this) {
+            try {
+               while (this.written == this.flushed && !this.closing)
+                  wait();
+               // gives a burst FLUSH_MS to fill the batch
+               long deadline = System.currentTimeMillis() + FLUSH_MS;
+               long left;
+               while (this.written - this.flushed < BATCH_ROWS && !this.closing && (left = deadline - System.currentTimeMillis()) > 0)
+                  wait(left);
+            }catch (InterruptedException e) {
+               return;
+            }//end try
+            if (this.written == this.flushed)
+               return;
+            from = this.flushed;
+            to = Math.min(this.written, from + BATCH_ROWS);
+         }//end synchronized
+         try {
+            store(from, to);
+         }catch (SQLException e) {
+            synchronized (this) {
+               if (!e.getMessage().equals(this.lastError))
+                  System.err.println("Booking journal: " + (to - from) + " bookings not flushed, retrying: " + e.getMessage());
+               this.lastError = e.getMessage();
+               if (this.closing)
+                  return;
+               try {
+                  wait(RETRY_MS);
+               }catch (InterruptedException ie) {
+                  return;
+               }//end try
+            }//end synchronized
+            continue;
+         }//end try
+         synchronized (this) {
+            this.flushed = to;
+            this.lastError = null;
+            this.buffer.putInt(8, to);
+            this.buffer.force();
+            notifyAll();
+         }//end synchronized
+      }//end while
+   }//end flushLoop
+
+   private Object[] values (int record) {
+      int at = HEADER + record * RECORD;
+      Object[] values = new Object[FIELDS];
+      for (int i = 0; i < FIELDS; ++i)
+         values[i] = this.buffer.getInt(at + i * 4);
+      values[FIELDS - 1] = BigDecimal.valueOf(this.buffer.getInt(at + (FIELDS - 1) * 4), 2);
+      return values;
+   }//end values
+
+   /* Inserts the records from up to to in one transaction.  When the batch fails the records are inserted one by one; a record whose insert fails
+    * while the connection still answers is refused by the database and rejected, any other failure is thrown and the records are retried later */
+   private void store (int from, int to) throws SQLException {
+      long start = System.nanoTime();
+      long count = 0;
+      ConnectionPool.PooledConnection conn = this.esql.borrow();
+      Connection c = conn.connection();
+      c.setAutoCommit(false);
+      try {
+         PreparedStatement stmt = null;
+         Object[][] batch = new Object[to - from][];
+         try {
+            for (int r = from; r < to; ++r) {
+               batch[r - from] = values(r);
+               stmt = conn.prepare(INSERT, batch[r - from]);
+               stmt.addBatch();
+            }//end for
+            int[] counts = stmt.executeBatch();
+            c.commit();
+            for (int i = 0; i < counts.length; ++i) {
+               count += Math.max(counts[i], 0);
+               if (counts[i] > 0)
+                  booked(batch[i]);
+            }//end for
+            return;
+         }catch (SQLException e) {
+            c.rollback();
+            if (stmt != null)
+               stmt.clearBatch();
+         }//end try
+         for (int r = from; r < to; ++r) {
+            Object[] values = values(r);
+            try {
+               int n = conn.prepare(INSERT, values).executeUpdate();
+               c.commit();
+               count += n;
+               if (n > 0)
+                  booked(values);
+            }catch (SQLException e) {
+               c.rollback();
+               if (!answers(conn))
+                  throw e;
+               reject(values, e);
+            }//end try
+         }//end for
+      }finally{
+         c.setAutoCommit(true);
+         this.esql.release(conn);
+         synchronized (this) {
+            this.inserted += count;
+         }//end synchronized
+         Stats.call("journal", INSERT, start, to - from, count);
+      }//end try
+   }//end store
+
+   /* Marks the room of an inserted booking as booked for its day, a refused booking never is */
+   private void booked (Object[] values) {
+      try {
+         this.esql.availability().book((Integer) values[2], (Integer) values[3], (Integer) values[4]);
+      }catch (SQLException e) {
+         // the index could not be built, it reads the booking from the database when it is
+      }//end try
+   }//end booked
+
+   /* True when the connection still runs a query, so an insert that just failed was refused for its data; pg73jdbc3.jar sets no SQLState to tell */
+   private static boolean answers (ConnectionPool.PooledConnection conn) {
+      try {
+         conn.prepare("SELECT 1").executeQuery().close();
+         conn.connection().commit();
+         return true;
+      }catch (SQLException e) {
+         return false;
+      }//end try
+   }//end answers
+
+   private void reject (Object[] values, SQLException e) {
+      String line = String.format("bID %s customer %s hotelID %s roomNo %s date %s noOfPeople %s price %s: %s",
+            values[0], values[1], values[2], values[3], DateCodec.format((Integer) values[4]), values[5], values[6], e.getMessage());
+      System.err.println("Booking journal: booking rejected, " + line);
+      try (PrintWriter out = new PrintWriter(new FileWriter(REJECTED, true))) {
+         out.println(line);
+      }catch (IOException io) {
+         System.err.println("Booking journal: cannot write " + REJECTED + ": " + io.getMessage());
+      }//end try
+      synchronized (this) {
+         ++this.rejected;
+      }//end synchronized
+   }//end reject
+
+   /**
+    * Flushes the journaled bookings and stops the flusher.  Waits at most
+    * CLOSE_MS; bookings left over are inserted by the next run.
+    */
+   public void close () {
+      synchronized (this) {
+         this.closing = true;
+         notifyAll();
+      }//end synchronized
+      try {
+         this.flusher.join(CLOSE_MS);
+      }catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }//end try
+      synchronized (this) {
+         if (this.written > this.flushed)
+            System.err.println("Booking journal: " + (this.written - this.flushed) + " bookings left in " + FILE + " for the next run");
+      }//end synchronized
+      this.flusher.interrupt();
+      try {
+         this.file.close();
+      }catch (IOException e) {
+         // the mapping stays valid until it is collected
+      }//end try
+   }//end close
+
+   /**
+    * @return the number of journaled bookings not yet in the database
+    */
+   public synchronized int pending () {
+      return this.written - this.flushed;
+   }//end pending
+
+   /**
+    * @return the bookings waiting to be flushed and the ones flushed so far
+    */
+   public synchronized String summary () {
+      return String.format("%d bookings to flush, %d inserted, %d rejected, generation %d, %d of %d records used",
+            pending(), this.inserted, this.rejected, this.generation, this.written, CAPACITY);
+   }//end summary
+
+}//end BookingJournal
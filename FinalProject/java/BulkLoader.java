@@ -0,0 +1,338 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class loads the data/*.csv feeds into the database without going
+ * through the menu.  Files use the same format as the \COPY commands in
+ * sql/create.sql.
+ *
+ * Tables that do not depend on each other are loaded in parallel, each on its
+ * own pooled connection.  A reader thread cuts the file into chunks and hands
+ * them to the writer through a small bounded queue, so a slow database slows
+ * the reader down instead of filling the heap.  Every chunk is committed in
+ * the same transaction as its LoadProgress row, so a load that was
+ * interrupted resumes after the last committed chunk without duplicating
+ * rows.
+ */
+public class BulkLoader {
+
+   // number of lines sent to the server per transaction
+   static final int CHUNK_ROWS = Integer.getInteger("dbproject.load.chunkRows", 5000);
+   // number of chunks the reader may get ahead of the writer
+   static final int QUEUE_CHUNKS = 4;
+
+   /**
+    * Describes one feed: the table and columns it is loaded into, the column
+    * types used when COPY is not available, and the load level.  Tables of
+    * the same level do not reference each other and are loaded in parallel.
+    */
+   static class TableSpec {
+      final String table;
+      final String file;
+      final String[] columns;
+      final String[] types;
+      // the date columns, parsed with DateCodec
+      final boolean[] dates;
+      final int level;
+      final String keyColumn;
+      final String sequence;
+
+      TableSpec (String table, String file, String[] columns, String[] types, int level, String keyColumn, String sequence) {
+         this.table = table;
+         this.file = file;
+         this.columns = columns;
+         this.types = types;
+         this.dates = new boolean[types.length];
+         for (int i = 0; i < types.length; ++i)
+            this.dates[i] = types[i].equals("date");
+         this.level = level;
+         this.keyColumn = keyColumn;
+         this.sequence = sequence;
+      }
+
+      String columnList () {
+         return String.join(", ", this.columns);
+      }
+   }//end TableSpec
+
+   // the nine tables of sql/create.sql, in the order their foreign keys need
+   static final TableSpec[] TABLES = {
+      new TableSpec("Hotel", "hotel.csv", new String[] {"hotelID", "address", "manager"},
+                    new String[] {"numeric", "text", "numeric"}, 0, null, null),
+      new TableSpec("Customer", "customer.csv", new String[] {"customerID", "fName", "lName", "Address", "phNo", "DOB", "gender"},
+                    new String[] {"numeric", "text", "text", "text", "numeric", "date", "GenderType"}, 0, "customerID", "customer_id_seq"),
+      new TableSpec("MaintenanceCompany", "maintenanceCompany.csv", new String[] {"cmpID", "name", "address", "isCertified"},
+                    new String[] {"numeric", "text", "text", "boolean"}, 0, null, null),
+      new TableSpec("Staff", "staff.csv", new String[] {"SSN", "fName", "lName", "address", "role", "employerID"},
+                    new String[] {"numeric", "text", "text", "text", "StaffRole", "numeric"}, 1, null, null),
+      new TableSpec("Room", "room.csv", new String[] {"hotelID", "roomNo", "roomType"},
+                    new String[] {"numeric", "numeric", "text"}, 1, null, null),
+      new TableSpec("Booking", "booking.csv", new String[] {"bID", "customer", "hotelID", "roomNo", "bookingDate", "noOfPeople", "price"},
+                    new String[] {"numeric", "numeric", "numeric", "numeric", "date", "numeric", "numeric"}, 2, "bID", "booking_id_seq"),
+      new TableSpec("Repair", "repair.csv", new String[] {"rID", "hotelID", "roomNo", "mCompany", "repairDate", "description", "repairType"},
+                    new String[] {"numeric", "numeric", "numeric", "numeric", "date", "text", "text"}, 2, "rID", "repair_id_seq"),
+      new TableSpec("Assigned", "assigned.csv", new String[] {"asgID", "staffID", "hotelID", "roomNo"},
+                    new String[] {"numeric", "numeric", "numeric", "numeric"}, 2, "asgID", "assigned_id_seq"),
+      new TableSpec("Request", "request.csv", new String[] {"reqID", "managerID", "repairID", "requestDate", "description"},
+                    new String[] {"numeric", "numeric", "numeric", "date", "text"}, 3, "reqID", "request_id_seq"),
+   };
+
+   private final DBProject esql;
+   private final File dir;
+
+   public BulkLoader (DBProject esql, File dir) {
+      this.esql = esql;
+      this.dir = dir;
+   }//end BulkLoader
+
+   /**
+    * Loads the given files, or every feed found in the directory when files
+    * is empty.
+    *
+    * @param files names of the csv files to load, e.g. booking.csv
+    * @return true when every file loaded
+    */
+   public boolean run (List<String> files) throws Exception {
+      this.esql.executeUpdate("CREATE TABLE IF NOT EXISTS LoadProgress(feed TEXT NOT NULL, rowsLoaded Numeric NOT NULL, PRIMARY KEY(feed))");
+
+      List<TableSpec> todo = new ArrayList<TableSpec>();
+      for (TableSpec spec : TABLES) {
+         if (files.isEmpty() ? new File(this.dir, spec.file).isFile() : files.contains(spec.file))
+            todo.add(spec);
+      }//end for
+      if (todo.isEmpty()) {
+         System.out.println("Nothing to load in " + this.dir);
+         return true;
+      }//end if
+
+      ExecutorService workers = Executors.newFixedThreadPool(DBProject.POOL_SIZE);
+      boolean ok = true;
+      try {
+         for (int level = 0; level <= 3 && ok; ++level) {
+            List<Future<Long>> running = new ArrayList<Future<Long>>();
+            for (final TableSpec spec : todo) {
+               if (spec.level == level)
+                  running.add(workers.submit(() -> load(spec)));
+            }//end for
+            for (Future<Long> f : running) {
+               try {
+                  f.get();
+               }catch (Exception e) {
+                  Throwable cause = e.getCause() != null ? e.getCause() : e;
+                  System.out.println("Error loading: " + cause.getMessage());
+                  ok = false;
+               }//end try
+            }//end for
+         }//end for
+      }finally{
+         workers.shutdown();
+      }//end try
+      if (!ok)
+         return false;
+
+      // same fix-up create.sql runs once Staff is loaded
+      for (TableSpec spec : todo) {
+         if (spec.table.equals("Staff"))
+            this.esql.executeUpdate("UPDATE Hotel SET manager = Staff.ssn FROM Staff WHERE Hotel.hotelID = Staff.employerID AND Staff.role = 'Manager'");
+      }//end for
+
+      // loaded bookings bypass the rollup updates of bookRoom, so the rollups are computed again
+      for (TableSpec spec : todo) {
+         if (spec.table.equals("Booking"))
+            Rollups.rebuild(this.esql);
+      }//end for
+
+      // move the key sequences past the loaded keys so KeyAllocator does not hand them out again
+      for (TableSpec spec : todo) {
+         if (spec.sequence == null)
+            continue;
+         this.esql.getSelectString("SELECT setval('" + spec.sequence + "', GREATEST(CAST((SELECT COALESCE(MAX(" + spec.keyColumn + "), 0) + 1 FROM "
+               + spec.table + ") AS bigint), (SELECT last_value + " + KeyAllocator.BLOCK_SIZE + " FROM " + spec.sequence + ")), false)");
+      }//end for
+      return true;
+   }//end run
+
+   /* Loads one feed, resuming after the rows a previous run already committed. Returns the number of rows loaded */
+   private long load (TableSpec spec) throws Exception {
+      File file = new File(this.dir, spec.file);
+      // a feed only resumes when it is the same file that was partially loaded
+      String feed = spec.file + ":" + file.length() + ":" + file.lastModified();
+      String done = this.esql.getSelectString("SELECT rowsLoaded FROM LoadProgress WHERE feed = ?", feed);
+      final long skip = done.isEmpty() ? 0 : Long.parseLong(done);
+
+      final ArrayBlockingQueue<List<String>> chunks = new ArrayBlockingQueue<List<String>>(QUEUE_CHUNKS);
+      final List<String> end = new ArrayList<String>();
+      final Exception[] readError = new Exception[1];
+      Thread reader = new Thread(() -> {
+         try (BufferedReader in = new BufferedReader(new FileReader(file), 1 << 16)) {
+            long seen = 0;
+            List<String> chunk = new ArrayList<String>(CHUNK_ROWS);
+            String line;
+            while ((line = in.readLine()) != null) {
+               if (line.isEmpty() || seen++ < skip)
+                  continue;
+               chunk.add(line);
+               if (chunk.size() == CHUNK_ROWS) {
+                  chunks.put(chunk);
+                  chunk = new ArrayList<String>(CHUNK_ROWS);
+               }//end if
+            }//end while
+            if (!chunk.isEmpty())
+               chunks.put(chunk);
+         }catch (Exception e) {
+            readError[0] = e;
+         }finally{
+            if (readError[0] != null) {
+               // the load fails either way, and the loader may be gone: the chunks not loaded yet are dropped so the end marker fits without waiting
+               chunks.clear();
+               chunks.offer(end);
+            }else {
+               try {
+                  chunks.put(end);
+               }catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }//end try
+            }//end if
+         }//end try
+      }, "load-" + spec.file);
+      reader.setDaemon(true);
+      reader.start();
+
+      long start = System.currentTimeMillis();
+      long loaded = skip;
+      ConnectionPool.PooledConnection conn = this.esql.borrow();
+      Connection c = conn.connection();
+      boolean autoCommit = c.getAutoCommit();
+      Object copyApi = copyApi(c);
+      try {
+         c.setAutoCommit(false);
+         List<String> chunk;
+         while ((chunk = chunks.take()) != end) {
+            try {
+               if (copyApi != null)
+                  copyChunk(copyApi, spec, chunk);
+               else
+                  insertChunk(conn, spec, chunk);
+               loaded += chunk.size();
+               if (conn.prepare("UPDATE LoadProgress SET rowsLoaded = ? WHERE feed = ?", loaded, feed).executeUpdate() == 0)
+                  conn.prepare("INSERT INTO LoadProgress(feed, rowsLoaded) VALUES (?, ?)", feed, loaded).executeUpdate();
+               c.commit();
+            }catch (Exception e) {
+               c.rollback();
+               reader.interrupt();
+               throw new Exception(spec.file + " after row " + (loaded) + ": " + e.getMessage(), e);
+            }//end try
+         }//end while
+         if (readError[0] != null)
+            throw new Exception(spec.file + ": " + readError[0].getMessage(), readError[0]);
+      }finally{
+         c.setAutoCommit(autoCommit);
+         this.esql.release(conn);
+      }//end try
+
+      System.out.println(String.format("Loaded %s into %s: %d rows (%d already loaded by an earlier run) in %dms%s",
+            spec.file, spec.table, loaded - skip, skip, System.currentTimeMillis() - start,
+            copyApi != null ? " using COPY" : " using batched INSERT"));
+      return loaded - skip;
+   }//end load
+
+   /* Returns the driver's CopyManager when the JDBC driver supports the COPY protocol, null otherwise.
+    * Looked up by reflection because the bundled pg73jdbc3.jar predates it. */
+   private static Object copyApi (Connection c) {
+      try {
+         Method m = c.getClass().getMethod("getCopyAPI");
+         return m.invoke(c);
+      }catch (Exception e) {
+         return null;
+      }//end try
+   }//end copyApi
+
+   /* Streams one chunk through COPY ... FROM STDIN, in the text format the \COPY commands of create.sql use */
+   private static void copyChunk (Object copyApi, TableSpec spec, List<String> chunk) throws Exception {
+      StringBuilder data = new StringBuilder(chunk.size() * 64);
+      for (String line : chunk)
+         appendLine(data, spec, line);
+      Method copyIn = copyApi.getClass().getMethod("copyIn", String.class, Reader.class);
+      copyIn.invoke(copyApi, "COPY " + spec.table + "(" + spec.columnList() + ") FROM STDIN WITH DELIMITER ','",
+                    new StringReader(data.toString()));
+   }//end copyChunk
+
+   /* Appends one line for COPY with its dates rewritten as yyyy-mm-dd, which the server reads whatever its DateStyle */
+   private static void appendLine (StringBuilder data, TableSpec spec, String line) throws SQLException {
+      int column = 0, start = 0, copied = 0;
+      for (int i = 0; i <= line.length(); ++i) {
+         if (i < line.length() && line.charAt(i) != ',')
+            continue;
+         if (column < spec.dates.length && spec.dates[column] && !(i - start == 2 && line.startsWith("\\N", start))) {
+            int day = DateCodec.parse(line, start, i);
+            if (day == DateCodec.INVALID)
+               throw new SQLException("invalid date " + line.substring(start, i) + " in: " + line);
+            DateCodec.appendIso(data.append(line, copied, start), day);
+            copied = i;
+         }//end if
+         ++column;
+         start = i + 1;
+      }//end for
+      data.append(line, copied, line.length()).append('\n');
+   }//end appendLine
+
+   /* Fallback for drivers without COPY: sends the chunk as one JDBC batch of INSERT statements */
+   private static void insertChunk (ConnectionPool.PooledConnection conn, TableSpec spec, List<String> chunk) throws SQLException {
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(spec.table).append("(").append(spec.columnList()).append(") VALUES (");
+      for (int i = 0; i < spec.types.length; ++i)
+         sql.append(i == 0 ? "" : ", ").append(spec.dates[i] ? DateCodec.PARAM : "CAST(? AS " + spec.types[i] + ")");
+      sql.append(")");
+
+      PreparedStatement stmt = conn.prepare(sql.toString());
+      try {
+         for (String line : chunk) {
+            String[] fields = line.split(",", -1);
+            if (fields.length != spec.columns.length)
+               throw new SQLException("expected " + spec.columns.length + " fields but found " + fields.length + " in: " + line);
+            for (int i = 0; i < fields.length; ++i) {
+               if (fields[i].equals("\\N")) {
+                  stmt.setNull(i + 1, spec.dates[i] ? Types.INTEGER : Types.VARCHAR);
+               }else if (spec.dates[i]) {
+                  int day = DateCodec.parse(fields[i]);
+                  if (day == DateCodec.INVALID)
+                     throw new SQLException("invalid date " + fields[i] + " in: " + line);
+                  stmt.setInt(i + 1, day);
+               }else
+                  stmt.setString(i + 1, fields[i]);
+            }//end for
+            stmt.addBatch();
+         }//end for
+         stmt.executeBatch();
+      }finally{
+         stmt.clearBatch();
+      }//end try
+   }//end insertChunk
+
+}//end BulkLoader
@@ -0,0 +1,338 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.DriverManager;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps a fixed number of physical PostgreSQL connections open and
+ * leases them to the DBProject helpers, so several operations can run at the
+ * same time instead of queueing behind a single connection.
+ *
+ * A lease is bound to the thread that borrowed it: borrowing again on the same
+ * thread returns the same connection, and it only goes back to the pool when
+ * every borrow has been released.
+ */
+public class ConnectionPool {
+
+   // how long a borrower waits for a free connection before giving up.
+   static final long LEASE_TIMEOUT_MS = Long.getLong("dbproject.pool.leaseTimeoutMs", 10000L);
+   // a lease held longer than this is reported as a possible leak.
+   static final long LEAK_THRESHOLD_MS = Long.getLong("dbproject.pool.leakThresholdMs", 60000L);
+   // an idle connection is checked with SELECT 1 before reuse after this long.
+   static final long VALIDATION_INTERVAL_MS = Long.getLong("dbproject.pool.validationIntervalMs", 30000L);
+   // prepared statements kept open on each connection, keyed by SQL text.
+   static final int STATEMENT_CACHE_SIZE = 64;
+
+   private final String url;
+   private final String user;
+   private final String passwd;
+   private final PooledConnection[] all;
+   private final ArrayBlockingQueue<PooledConnection> idle;
+   private final ThreadLocal<PooledConnection> held = new ThreadLocal<PooledConnection>();
+   private final Thread reaper;
+   private volatile boolean closed = false;
+
+   // pool metrics
+   private final AtomicLong borrows = new AtomicLong();
+   private final AtomicLong timeouts = new AtomicLong();
+   private final AtomicLong reconnects = new AtomicLong();
+   private final AtomicLong leaks = new AtomicLong();
+   private final AtomicLong waitNanos = new AtomicLong();
+   private final AtomicLong maxWaitNanos = new AtomicLong();
+
+   /**
+    * Opens size physical connections to the given database.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param size the number of connections kept open
+    * @throws java.sql.SQLException when a connection could not be made
+    */
+   public ConnectionPool (String url, String user, String passwd, int size) throws SQLException {
+      this.url = url;
+      this.user = user;
+      this.passwd = passwd;
+      this.all = new PooledConnection[size];
+      this.idle = new ArrayBlockingQueue<PooledConnection>(size);
+      for (int i = 0; i < size; ++i) {
+         this.all[i] = new PooledConnection(i, DriverManager.getConnection(url, user, passwd));
+         this.idle.add(this.all[i]);
+      }//end for
+
+      this.reaper = new Thread(new Runnable() {
+         public void run() { reap(); }
+      }, "pool-leak-detector");
+      this.reaper.setDaemon(true);
+      this.reaper.start();
+   }//end ConnectionPool
+
+   /**
+    * Leases a connection to the calling thread, waiting at most
+    * LEASE_TIMEOUT_MS for one to become free.
+    *
+    * @return the leased connection; hand it back with release
+    * @throws java.sql.SQLException when no connection became free in time
+    */
+   public PooledConnection borrow () throws SQLException {
+      PooledConnection conn = this.held.get();
+      if (conn != null) {
+         ++conn.depth;
+         return conn;
+      }//end if
+      if (this.closed)
+         throw new SQLException("Connection pool is closed");
+
+      long start = System.nanoTime();
+      try {
+         conn = this.idle.poll(LEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      }catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new SQLException("Interrupted while waiting for a database connection");
+      }//end try
+      long waited = System.nanoTime() - start;
+      this.waitNanos.addAndGet(waited);
+      long max;
+      while (waited > (max = this.maxWaitNanos.get()) && !this.maxWaitNanos.compareAndSet(max, waited));
+      if (conn == null) {
+         this.timeouts.incrementAndGet();
+         throw new SQLException("Timed out after " + LEASE_TIMEOUT_MS + "ms waiting for a database connection");
+      }//end if
+
+      try {
+         validate(conn);
+      }catch (SQLException e) {
+         this.idle.add(conn);
+         throw e;
+      }//end try
+      this.borrows.incrementAndGet();
+      conn.depth = 1;
+      conn.owner = Thread.currentThread();
+      conn.borrower = new Throwable("Connection " + conn.id + " borrowed by " + conn.owner.getName());
+      conn.borrowedAt = System.currentTimeMillis();
+      conn.leakReported = false;
+      this.held.set(conn);
+      return conn;
+   }//end borrow
+
+   /**
+    * Hands a leased connection back.  The connection returns to the pool
+    * once every borrow made on this thread has been released.
+    *
+    * @param conn the connection returned by borrow
+    */
+   public void release (PooledConnection conn) {
+      if (--conn.depth > 0)
+         return;
+      this.held.remove();
+      conn.owner = null;
+      conn.borrower = null;
+      conn.lastUsed = System.currentTimeMillis();
+      if (!this.closed)
+         this.idle.add(conn);
+   }//end release
+
+   /* Re-checks a connection that sat idle for a while, replacing it when the server dropped it */
+   private void validate (PooledConnection conn) throws SQLException {
+      if (System.currentTimeMillis() - conn.lastUsed < VALIDATION_INTERVAL_MS)
+         return;
+      try {
+         Statement stmt = conn.connection.createStatement();
+         stmt.executeQuery("SELECT 1").close();
+         stmt.close();
+      }catch (SQLException e) {
+         conn.close();
+         conn.connection = DriverManager.getConnection(this.url, this.user, this.passwd);
+         this.reconnects.incrementAndGet();
+      }//end try
+      conn.lastUsed = System.currentTimeMillis();
+   }//end validate
+
+   /* Background loop reporting leases held longer than LEAK_THRESHOLD_MS */
+   private void reap () {
+      while (!this.closed) {
+         try {
+            Thread.sleep(Math.max(1000L, LEAK_THRESHOLD_MS / 4));
+         }catch (InterruptedException e) {
+            return;
+         }//end try
+         long now = System.currentTimeMillis();
+         for (PooledConnection conn : this.all) {
+            Throwable borrower = conn.borrower;
+            if (borrower != null && !conn.leakReported && now - conn.borrowedAt > LEAK_THRESHOLD_MS) {
+               conn.leakReported = true;
+               this.leaks.incrementAndGet();
+               System.err.println("Warning: connection " + conn.id + " held for " + (now - conn.borrowedAt) + "ms, possible leak");
+               borrower.printStackTrace();
+            }//end if
+         }//end for
+      }//end while
+   }//end reap
+
+   /**
+    * @return the number of connections currently leased out
+    */
+   public int active () {
+      return this.all.length - this.idle.size();
+   }//end active
+
+   /**
+    * @return the number of connections kept by the pool
+    */
+   public int size () {
+      return this.all.length;
+   }//end size
+
+   /**
+    * @return a one line summary of the pool counters
+    */
+   public String metrics () {
+      long n = this.borrows.get();
+      return String.format("pool size=%d active=%d borrows=%d timeouts=%d reconnects=%d leaks=%d avgWait=%.3fms maxWait=%.3fms",
+            this.all.length, active(), n, this.timeouts.get(), this.reconnects.get(), this.leaks.get(),
+            n == 0 ? 0.0 : this.waitNanos.get() / 1e6 / n, this.maxWaitNanos.get() / 1e6);
+   }//end metrics
+
+   /**
+    * Closes every physical connection.  Connections still leased are closed
+    * as well, so in-flight work on other threads fails.
+    */
+   public void close () {
+      this.closed = true;
+      this.reaper.interrupt();
+      for (PooledConnection conn : this.all)
+         conn.close();
+   }//end close
+
+   /**
+    * One physical connection of the pool together with the prepared
+    * statements that are open on it.
+    */
+   public static class PooledConnection {
+      final int id;
+      Connection connection;
+      private final StatementCache statements = new StatementCache(STATEMENT_CACHE_SIZE);
+
+      // lease bookkeeping, only touched by the owning thread and the reaper
+      int depth;
+      volatile Thread owner;
+      volatile Throwable borrower;
+      volatile long borrowedAt;
+      volatile boolean leakReported;
+      volatile long lastUsed = System.currentTimeMillis();
+
+      PooledConnection (int id, Connection connection) {
+         this.id = id;
+         this.connection = connection;
+      }
+
+      /**
+       * @return the physical connection, valid while the lease is held
+       */
+      public Connection connection () {
+         return this.connection;
+      }
+
+      /**
+       * Returns the prepared statement for the given SQL shape with the values
+       * bound.  Statements are kept open in a bounded LRU cache, which saves
+       * the driver from splitting the SQL at its placeholders on every call.
+       * pg73jdbc3.jar sends the statement as text with the values filled in,
+       * so the server still parses and plans it on every execution; its
+       * setUseServerPrepare compares server versions as text and does
+       * nothing on Postgres 10 and later.
+       *
+       * @param sql the SQL string, using ? for every value
+       * @param params the values bound to the ? placeholders, in order
+       * @return the bound statement; it stays owned by the cache, do not close it
+       * @throws java.sql.SQLException when the statement could not be prepared
+       */
+      public PreparedStatement prepare (String sql, Object... params) throws SQLException {
+         PreparedStatement stmt = this.statements.get(sql);
+         if (stmt == null) {
+            stmt = this.connection.prepareStatement(sql);
+            this.statements.put(sql, stmt);
+         }//end if
+         stmt.clearParameters();
+         for (int i = 0; i < params.length; ++i) {
+            if (params[i] == null)
+               stmt.setNull(i + 1, Types.NULL);
+            else
+               stmt.setObject(i + 1, params[i]);
+         }//end for
+         return stmt;
+      }//end prepare
+
+      void close () {
+         this.statements.closeAll();
+         try {
+            this.connection.close();
+         }catch (SQLException e) {
+            // ignored.
+         }//end try
+      }
+   }//end PooledConnection
+
+   /**
+    * LRU map of open prepared statements keyed by their SQL text.  The least
+    * recently used statement is closed once the cache is over capacity.
+    */
+   static class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+      private static final long serialVersionUID = 1L;
+
+      private final int capacity;
+
+      StatementCache (int capacity) {
+         super (16, 0.75f, true);
+         this.capacity = capacity;
+      }
+
+      @Override
+      protected boolean removeEldestEntry (Map.Entry<String, PreparedStatement> eldest) {
+         if (size () <= this.capacity)
+            return false;
+         try {
+            eldest.getValue ().close ();
+         }catch (SQLException e) {
+            // ignored.
+         }//end try
+         return true;
+      }
+
+      /* Closes every cached statement, used when the connection goes away */
+      void closeAll () {
+         List<PreparedStatement> open = new ArrayList<PreparedStatement>(values ());
+         clear ();
+         for (PreparedStatement stmt : open) {
+            try {
+               stmt.close ();
+            }catch (SQLException e) {
+               // ignored.
+            }//end try
+         }//end for
+      }
+   }//end StatementCache
+
+}//end ConnectionPool
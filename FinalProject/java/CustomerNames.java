@@ -0,0 +1,200 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class is a dictionary from customer names to customer IDs, so the
+ * reports can ask for a name and then run by customerID.  Names are
+ * normalized by trimming and lower casing, which makes the search case
+ * insensitive, and are kept sorted so every name starting with a prefix is
+ * found with one range scan.
+ *
+ * The dictionary is loaded once from the Customer table and kept current by
+ * addCustomer.  A full name that is not in it may belong to a customer added
+ * by another process, so it is looked up with CUSTOMER_BY_NAME, which uses
+ * customerNameIndex from sql/index.sql, and remembered when found.
+ */
+public class CustomerNames {
+
+   static final String CUSTOMER_BY_NAME = "SELECT c.customerID, c.fName, c.lName FROM Customer c WHERE lower(trim(c.lName)) = ? AND lower(trim(c.fName)) = ?";
+
+   /* One customer found by a search */
+   public static class Match {
+      public final int customerID;
+      public final String fName;
+      public final String lName;
+
+      Match (int customerID, String fName, String lName) {
+         this.customerID = customerID;
+         this.fName = fName;
+         this.lName = lName;
+      }
+   }//end Match
+
+   /* The customers sharing one normalized name, as first typed */
+   private static class Entry {
+      final String fName;
+      final String lName;
+      int[] ids = new int[0];
+
+      Entry (String fName, String lName) {
+         this.fName = fName;
+         this.lName = lName;
+      }
+
+      void add (int customerID) {
+         if (Arrays.binarySearch(this.ids, customerID) >= 0)
+            return;
+         this.ids = Arrays.copyOf(this.ids, this.ids.length + 1);
+         this.ids[this.ids.length - 1] = customerID;
+         Arrays.sort(this.ids);
+      }
+   }//end Entry
+
+   // keyed by the normalized first name, a \0 and the normalized last name
+   private final TreeMap<String, Entry> names = new TreeMap<String, Entry>();
+   // the same entries by customerID
+   private final LongHashMap<Entry> byId = new LongHashMap<Entry>(1 << 14);
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+   private final DBProject esql;
+   private int customers = 0;
+
+   private CustomerNames (DBProject esql) {
+      this.esql = esql;
+   }
+
+   /**
+    * Loads the name of every customer from the database.
+    *
+    * @param esql the database to read from
+    * @return the filled dictionary
+    * @throws java.sql.SQLException when the Customer table could not be read
+    */
+   public static CustomerNames build (DBProject esql) throws SQLException {
+      CustomerNames names = new CustomerNames(esql);
+      esql.forEachRow("SELECT c.customerID, c.fName, c.lName FROM Customer c", rs -> names.add(rs.getInt(1), rs.getString(2), rs.getString(3)));
+      return names;
+   }//end build
+
+   /**
+    * @return the name trimmed and lower cased, the form both the dictionary and customerNameIndex use
+    */
+   public static String normalize (String name) {
+      return name.trim().toLowerCase(Locale.ROOT);
+   }//end normalize
+
+   private static String key (String first, String last) {
+      return first + '\0' + last;
+   }//end key
+
+   /**
+    * Records a customer.
+    */
+   public void add (int customerID, String fName, String lName) {
+      String key = key(normalize(fName), normalize(lName));
+      this.lock.writeLock().lock();
+      try {
+         Entry entry = this.names.get(key);
+         if (entry == null) {
+            entry = new Entry(fName.trim(), lName.trim());
+            this.names.put(key, entry);
+         }//end if
+         int before = entry.ids.length;
+         entry.add(customerID);
+         this.customers += entry.ids.length - before;
+         this.byId.put(customerID, entry);
+      }finally{
+         this.lock.writeLock().unlock();
+      }//end try
+   }//end add
+
+   /**
+    * Finds the customers with the given name, ignoring case.  When no
+    * customer has exactly that name, the customers whose first and last
+    * names start with the given ones are returned instead.
+    *
+    * @param fName the first name or its start
+    * @param lName the last name or its start
+    * @param limit the most matches returned
+    * @return the matches, ordered by name and then customerID
+    * @throws java.sql.SQLException when the database fallback failed
+    */
+   public List<Match> find (String fName, String lName, int limit) throws SQLException {
+      String first = normalize(fName), last = normalize(lName);
+      List<Match> found = new ArrayList<Match>();
+      this.lock.readLock().lock();
+      try {
+         Entry exact = this.names.get(key(first, last));
+         if (exact != null) {
+            collect(exact, found, limit);
+            return found;
+         }//end if
+         for (Map.Entry<String, Entry> e : this.names.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+            if (found.size() >= limit)
+               break;
+            String key = e.getKey();
+            if (key.startsWith(last, key.indexOf('\0') + 1))
+               collect(e.getValue(), found, limit);
+         }//end for
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+      if (found.isEmpty()) {
+         this.esql.forEachRow(CUSTOMER_BY_NAME, rs -> {
+            add(rs.getInt(1), rs.getString(2), rs.getString(3));
+            if (found.size() < limit)
+               found.add(new Match(rs.getInt(1), rs.getString(2).trim(), rs.getString(3).trim()));
+         }, last, first);
+      }//end if
+      return found;
+   }//end find
+
+   /**
+    * @return the customer with this ID, or null when the dictionary does not know it
+    */
+   public Match customer (int customerID) {
+      this.lock.readLock().lock();
+      try {
+         Entry entry = this.byId.get(customerID);
+         return entry == null ? null : new Match(customerID, entry.fName, entry.lName);
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end customer
+
+   private static void collect (Entry entry, List<Match> found, int limit) {
+      for (int i = 0; i < entry.ids.length && found.size() < limit; ++i)
+         found.add(new Match(entry.ids[i], entry.fName, entry.lName));
+   }//end collect
+
+   /**
+    * @return a short description of the dictionary size
+    */
+   public String summary () {
+      this.lock.readLock().lock();
+      try {
+         return this.names.size() + " names, " + this.customers + " customers";
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end summary
+
+}//end CustomerNames
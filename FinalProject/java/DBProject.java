@@ -14,21 +14,27 @@
 import java.sql.DriverManager;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.io.File;
+import java.io.IOException;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 /* Includes for the project below */
 import java.util.ArrayList;
+import java.util.List;
+import java.math.BigDecimal;
 import java.time.*;
 import java.util.Map;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Date;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.text.ParseException;
 /**
  * This class defines a simple embedded SQL utility class that is designed to
@@ -37,8 +43,72 @@ import java.text.ParseException;
  */
 public class DBProject {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // customers listed when a name matches several, see readCustomer
+   static final int CUSTOMER_CHOICES = 20;
+
+   // rows fetched per round trip when streaming a result set.
+   static final int FETCH_SIZE = Integer.getInteger("dbproject.fetchSize", 1000);
+
+   // number of physical connections kept open to the database.
+   static final int POOL_SIZE = Integer.getInteger("dbproject.pool.size", 4);
+
+   // pool of physical database connections shared by the helpers below.
+   private ConnectionPool _pool = null;
+
+   // booked days per room, see availability()
+   private AvailabilityIndex _availability = null;
+
+   // hotel, room, company and staff keys, see references()
+   private ReferenceCache _references = null;
+
+   // customer name to customerID dictionary, see customerNames()
+   private CustomerNames _customerNames = null;
+
+   // memory mapped copy of the Booking columns reports 11 to 13 read, see bookingColumns()
+   private BookingColumnStore _bookingColumns = null;
+
+   // local journal of the bookings not yet in the database in write-behind mode, see journal()
+   private BookingJournal _journal = null;
+
+   // primary key generators, backed by the sequences created in sql/create.sql
+   final KeyAllocator customerKeys = new KeyAllocator(this, "customer_id_seq");
+   final KeyAllocator bookingKeys = new KeyAllocator(this, "booking_id_seq");
+   final KeyAllocator repairKeys = new KeyAllocator(this, "repair_id_seq");
+   final KeyAllocator requestKeys = new KeyAllocator(this, "request_id_seq");
+   final KeyAllocator assignedKeys = new KeyAllocator(this, "assigned_id_seq");
+
+   // SQL of the menu operations, kept here so IndexAdvisor can EXPLAIN the same statements.
+   // existence checks
+   static final String HOTEL_EXISTS = "SELECT 1 FROM Hotel H WHERE H.hotelID = ?";
+   static final String ROOM_EXISTS = "SELECT 1 FROM Room R WHERE R.hotelID = ? AND R.roomNo = ?";
+   static final String COMPANY_EXISTS = "SELECT 1 FROM MaintenanceCompany M WHERE M.cmpID = ?";
+   static final String CUSTOMER_EXISTS = "SELECT 1 FROM Customer C WHERE C.customerID = ?";
+   static final String CLEANER_OF_HOTEL_EXISTS = "SELECT 1 FROM Staff S WHERE S.SSN = ? AND S.role = 'HouseCleaning' AND S.employerID = ?";
+   static final String MANAGER_EXISTS = "SELECT 1 FROM Staff S WHERE S.SSN = ? AND S.role = 'Manager' AND S.employerID = ?";
+   static final String REPAIR_EXISTS = "SELECT 1 FROM Repair R WHERE R.rID = ?";
+   static final String REPAIR_ON_DATE_EXISTS = "SELECT 1 FROM Repair R WHERE R.rID = ? AND R.repairDate = " + DateCodec.PARAM;
+   // reports
+   static final String BOOKED_ROOMS = "SELECT COALESCE(SUM(d.bookings), 0) AS bookedRooms FROM HotelDayRollup d WHERE d.hotelID = ?";
+   // the same for a range of hotels, used by the all hotels reports, see HotelFanOut
+   static final String BOOKED_ROOMS_RANGE = "SELECT d.hotelID, SUM(d.bookings) FROM HotelDayRollup d WHERE d.hotelID BETWEEN ? AND ? GROUP BY d.hotelID ORDER BY d.hotelID";
+   static final String TOP_K_BOOKED_ROOMS = "SELECT r.roomType, r.roomNo, b.price, b.bookingDate, COUNT(*) OVER () AS qualifying FROM Room r, Booking b WHERE r.roomNo = b.roomNo and r.hotelID = b.hotelID and (b.bookingDate BETWEEN " + DateCodec.PARAM + " and " + DateCodec.PARAM + ") ORDER BY b.price DESC";
+   static final String TOP_K_CUSTOMER_BOOKINGS = "SELECT c.fName, c.lName, b.price, b.bookingDate, b.hotelID, COUNT(*) OVER () AS qualifying FROM Customer c, Booking b WHERE c.customerID = b.customer and b.customer = ? ORDER BY b.price DESC";
+   static final String CUSTOMER_TOTAL_COST = "SELECT c.fName, c.lName, SUM(b.price) FROM Customer c, Booking b WHERE c.customerID = b.customer and b.hotelID = ? and b.customer = ? and (b.bookingDate BETWEEN " + DateCodec.PARAM + " and " + DateCodec.PARAM + ") GROUP BY c.fName, c.lName";
+   static final String COMPANY_REPAIRS = "SELECT r.rID, r.repairType, r.hotelID, r.roomNo FROM Repair r, MaintenanceCompany m WHERE m.cmpID = r.mCompany AND m.name = ?";
+   static final String TOP_K_COMPANIES = "SELECT m.name, COUNT(DISTINCT r.rID), COUNT(*) OVER () AS qualifying FROM Repair r, MaintenanceCompany m WHERE r.mCompany = m.cmpID GROUP BY m.cmpID, m.name ORDER BY COUNT(DISTINCT r.rID) DESC";
+   static final String REPAIRS_PER_YEAR = "SELECT r.hotelID, r.roomNo, CAST(EXTRACT(YEAR FROM r.repairDate) AS integer) AS year, COUNT(*) AS repairs FROM Repair r";
+   static final String REPAIRS_PER_YEAR_GROUP = " GROUP BY r.hotelID, r.roomNo, year ORDER BY r.hotelID, r.roomNo, year";
+   static final String ROOM_REPAIRS_PER_YEAR = REPAIRS_PER_YEAR + " WHERE r.hotelID = ? AND r.roomNo = ?" + REPAIRS_PER_YEAR_GROUP;
+   static final String HOTEL_REPAIRS_PER_YEAR = REPAIRS_PER_YEAR + " WHERE r.hotelID = ?" + REPAIRS_PER_YEAR_GROUP;
+   static final String ALL_REPAIRS_PER_YEAR = REPAIRS_PER_YEAR + REPAIRS_PER_YEAR_GROUP;
+   // inserts, the first value is the key handed out by the table's KeyAllocator where it has one
+   static final String INSERT_CUSTOMER = "INSERT INTO Customer (customerID, fName, lName, Address, phNo, DOB, gender) VALUES (?, ?, ?, ?, ?, " + DateCodec.PARAM + ", ?::GenderType)";
+   static final String INSERT_ROOM = "INSERT INTO Room (hotelID, roomNo, roomType) VALUES (?, ?, ?)";
+   static final String INSERT_COMPANY = "INSERT INTO MaintenanceCompany (cmpID, name, address, isCertified) VALUES (?, ?, ?, ?)";
+   static final String INSERT_REPAIR = "INSERT INTO Repair (rID, hotelID, roomNo, mCompany, repairDate, description, repairType) VALUES (?, ?, ?, ?, " + DateCodec.PARAM + ", ?, ?)";
+   static final String INSERT_BOOKING = "INSERT INTO Booking (bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) VALUES (?, ?, ?, ?, " + DateCodec.PARAM + ", ?, ?)";
+   static final String INSERT_ASSIGNED = "INSERT INTO Assigned (asgID, staffID, hotelID, roomNo) VALUES (?, ?, ?, ?)";
+   static final String INSERT_REQUEST = "INSERT INTO Request (reqID, managerID, repairID, requestDate, description) VALUES (?, ?, ?, " + DateCodec.PARAM + ", ?)";
 
    // handling the keyboard inputs through a BufferedReader
    // This variable can be global for convenience.
@@ -62,8 +132,8 @@ public class DBProject {
          String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
          System.out.println ("Connection URL: " + url + "\n");
 
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
+         // obtain the physical connections
+         this._pool = new ConnectionPool(url, user, passwd, POOL_SIZE);
          System.out.println("Done");
       }catch (Exception e){
          System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
@@ -76,18 +146,26 @@ public class DBProject {
     * Method to execute an update SQL statement.  Update SQL instructions
     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
     *
-    * @param sql the input SQL string
+    * @param sql the input SQL string, using ? for every value
+    * @param params the values bound to the ? placeholders, in order
+    * @return the number of rows affected
     * @throws java.sql.SQLException when update failed
     */
-   public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the update instruction
-      stmt.executeUpdate (sql);
+   public int executeUpdate (String sql, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      int rowCount = 0;
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         // fetches the cached statement for this SQL shape and binds the values
+         PreparedStatement stmt = conn.prepare (sql, params);
 
-      // close the instruction
-      stmt.close ();
+         // issues the update instruction
+         rowCount = stmt.executeUpdate ();
+         return rowCount;
+      }finally{
+         release (conn);
+         Stats.call ("executeUpdate", sql, start, 1, rowCount);
+      }//end try
    }//end executeUpdate
 
    /**
@@ -95,118 +173,331 @@ public class DBProject {
     * method issues the query to the DBMS and outputs the results to
     * standard out.
     *
-    * @param query the input query string
+    * @param query the input query string, using ? for every value
+    * @param params the values bound to the ? placeholders, in order
     * @return the number of rows returned
     * @throws java.sql.SQLException when failed to execute the query
     */
-   public int executeQuery (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+   public int executeQuery (String query, Object... params) throws SQLException {
+      return streamQuery ("executeQuery", query, 0, rs -> printRows (rs, null), params);
+   }//end executeQuery
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /**
+    * Returns the in-memory room availability index, building it from the
+    * Room and Booking tables on first use.
+    *
+    * @return the availability index
+    * @throws java.sql.SQLException when the tables could not be read
+    */
+   public synchronized AvailabilityIndex availability () throws SQLException {
+      if (this._availability == null)
+         this._availability = AvailabilityIndex.build (this);
+      return this._availability;
+   }//end availability
 
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
+   /**
+    * Returns the in-memory cache of the Hotel, Room, MaintenanceCompany and
+    * Staff keys, loading it on first use.
+    *
+    * @return the reference data cache
+    * @throws java.sql.SQLException when the tables could not be read
+    */
+   public synchronized ReferenceCache references () throws SQLException {
+      if (this._references == null)
+         this._references = ReferenceCache.build (this);
+      return this._references;
+   }//end references
 
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-		System.out.print(rsmd.getColumnName(i) + "\t");
-	    }
-	    System.out.println();
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
-      }//end while
-      stmt.close ();
-      return rowCount;
-   }//end executeQuery
+   /**
+    * Returns the in-memory dictionary from customer names to customer IDs,
+    * loading it from the Customer table on first use.
+    *
+    * @return the customer name dictionary
+    * @throws java.sql.SQLException when the table could not be read
+    */
+   public synchronized CustomerNames customerNames () throws SQLException {
+      if (this._customerNames == null)
+         this._customerNames = CustomerNames.build (this);
+      return this._customerNames;
+   }//end customerNames
+
+   /**
+    * Returns the column copy of the Booking table, opening it on first use.
+    * The copy is refreshed by the reports, see BookingColumnStore.
+    *
+    * @return the booking column store
+    * @throws java.io.IOException when the column files could not be mapped
+    */
+   public synchronized BookingColumnStore bookingColumns () throws IOException {
+      if (this._bookingColumns == null)
+         this._bookingColumns = BookingColumnStore.open (this);
+      return this._bookingColumns;
+   }//end bookingColumns
+
+   /**
+    * Returns the write-behind journal of bookRoom, opening it on first use.
+    * Opening it flushes the bookings a previous run left in it, see
+    * BookingJournal.
+    *
+    * @return the booking journal
+    * @throws java.io.IOException when the journal file could not be mapped
+    */
+   public synchronized BookingJournal journal () throws IOException {
+      if (this._journal == null)
+         this._journal = BookingJournal.open (this);
+      return this._journal;
+   }//end journal
+
+   /**
+    * Leases a pooled connection to the calling thread.  Every borrow must be
+    * matched by a release in a finally block.
+    *
+    * @return the leased connection
+    * @throws java.sql.SQLException when no connection became free in time
+    */
+   public ConnectionPool.PooledConnection borrow () throws SQLException {
+      return this._pool.borrow ();
+   }//end borrow
+
+   /**
+    * Hands a connection obtained from borrow back to the pool.
+    *
+    * @param conn the leased connection
+    */
+   public void release (ConnectionPool.PooledConnection conn) {
+      this._pool.release (conn);
+   }//end release
+
+   /**
+    * Callback used by forEachRow, called once per row of the result set.
+    */
+   public interface RowHandler {
+      void row (ResultSet rs) throws SQLException;
+   }//end RowHandler
 
 /*******************************************************************************
  ************** START OF FUNCTION DEFINITIONS USED FOR THE PROJECT *************
  *******************************************************************************/
 
-   /*This function is to verify that information on the table exists. Similar to the excuteQuery, but the console output is removed*/
-   public int errorChecker(String query) throws SQLException { 
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
+   /*This function counts the rows returned by a query. Similar to the excuteQuery, but the console output is removed.
+    * Use exists to test whether a row is present, it does not transfer the matching rows.*/
+   public int errorChecker(String query, Object... params) throws SQLException { 
+      long start = System.nanoTime ();
       int rowCount = 0;
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         // issues the query instruction
+         ResultSet rs = conn.prepare (query, params).executeQuery ();
 
-      // iterates through the result set
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-	    }
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i) {
-         }
-         ++rowCount;
-      }//end while
-      stmt.close ();
-      return rowCount;
+         // iterates through the result set
+         while (rs.next()){
+            ++rowCount;
+         }//end while
+         rs.close ();
+         return rowCount;
+      }finally{
+         release (conn);
+         Stats.call ("errorChecker", query, start, 1, rowCount);
+      }//end try
    }
 
-   /*This function returns the a string from the results of a given query. This is used to extract a single result from the table.*/
-   public String getSelectString(String query) throws SQLException  { 
-      // creates a statement object
-      String result = "";
-      Statement stmt = this._connection.createStatement ();
+   /*This function checks whether a query returns at least one row. The query is wrapped in EXISTS so the server stops at the first
+    * matching row and sends back a single boolean instead of the matching rows.*/
+   public boolean exists(String query, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         ResultSet rs = conn.prepare ("SELECT EXISTS (" + query + ")", params).executeQuery ();
+         boolean found = rs.next () && rs.getBoolean (1);
+         rs.close ();
+         return found;
+      }finally{
+         release (conn);
+         Stats.call ("exists", query, start, 1, 1);
+      }//end try
+   }
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /*This function is the batched version of exists. Every query in queries is checked in a single round trip and the result
+    * holds one boolean per query, in the same order. params[i] holds the values bound to queries[i].*/
+   public boolean[] existsAll(String[] queries, Object[][] params) throws SQLException {
+      StringBuilder sql = new StringBuilder ("SELECT ");
+      int total = 0;
+      for (int i = 0; i < queries.length; ++i) {
+         if (i > 0)
+            sql.append (", ");
+         sql.append ("EXISTS (").append (queries[i]).append (")");
+         total += params[i].length;
+      }//end for
+      Object[] flat = new Object[total];
+      int pos = 0;
+      for (Object[] p : params) {
+         System.arraycopy (p, 0, flat, pos, p.length);
+         pos += p.length;
+      }//end for
+
+      long start = System.nanoTime ();
+      boolean[] found = new boolean[queries.length];
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         ResultSet rs = conn.prepare (sql.toString (), flat).executeQuery ();
+         if (rs.next ()) {
+            for (int i = 0; i < found.length; ++i)
+               found[i] = rs.getBoolean (i + 1);
+         }//end if
+         rs.close ();
+      }finally{
+         release (conn);
+         // the large groups of the batch mode are counted together so the statement list stays short
+         Stats.call ("existsAll", queries.length <= 4 ? String.join (" | ", queries) : "existsAll of " + queries.length + " checks", start, 1, 1);
+      }//end try
+      return found;
+   }
 
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
+   /*This function inserts a row only when every check query finds a row, validating and inserting in a single statement and round trip.
+    * insert must end with its VALUES list, as the INSERT_ constants do; checks[i] is bound to params[i] and values to the insert.
+    * maintain holds data-modifying statements that run with the insert and read the inserted row from a table named inserted,
+    * see Rollups. Returns -1 when the row was inserted, otherwise the index of the first check that found nothing.*/
+   public int insertChecked(String insert, Object[] values, String[] checks, Object[][] params, String... maintain) throws SQLException {
+      StringBuilder sql = new StringBuilder ("WITH checks AS (SELECT ");
+      int total = values.length;
+      for (int i = 0; i < checks.length; ++i) {
+         sql.append (i > 0 ? ", " : "").append ("EXISTS (").append (checks[i]).append (") AS c").append (i);
+         total += params[i].length;
+      }//end for
+      // INSERT ... VALUES (v) becomes INSERT ... SELECT v FROM checks WHERE c0 AND c1 ...
+      int values_at = insert.lastIndexOf (" VALUES (");
+      sql.append ("), inserted AS (").append (insert, 0, values_at).append (" SELECT ")
+         .append (insert, values_at + " VALUES (".length (), insert.lastIndexOf (')')).append (" FROM checks WHERE ");
+      for (int i = 0; i < checks.length; ++i)
+         sql.append (i > 0 ? " AND c" : "c").append (i);
+      sql.append (" RETURNING *)");
+      for (int i = 0; i < maintain.length; ++i)
+         sql.append (", m").append (i).append (" AS (").append (maintain[i]).append (")");
+      sql.append (" SELECT checks.*, (SELECT COUNT(*) FROM inserted) FROM checks");
+
+      Object[] flat = new Object[total];
+      int pos = 0;
+      for (Object[] p : params) {
+         System.arraycopy (p, 0, flat, pos, p.length);
+         pos += p.length;
+      }//end for
+      System.arraycopy (values, 0, flat, pos, values.length);
+
+      long start = System.nanoTime ();
+      int failed = -1;
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         ResultSet rs = conn.prepare (sql.toString (), flat).executeQuery ();
+         rs.next ();
+         for (int i = checks.length - 1; i >= 0; --i) {
+            if (!rs.getBoolean (i + 1))
+               failed = i;
+         }//end for
+         rs.close ();
+         return failed;
+      }finally{
+         release (conn);
+         Stats.call ("insertChecked", insert, start, 1, failed < 0 ? 1 : 0);
+      }//end try
+   }
 
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-	    }
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i)
-            result = rs.getString(i);
-      }//end while
-      stmt.close ();
+   /*This function returns the a string from the results of a given query. This is used to extract a single result from the table.*/
+   public String getSelectString(String query, Object... params) throws SQLException  { 
+      long start = System.nanoTime ();
+      int rowCount = 0;
+      String result = "";
+      ConnectionPool.PooledConnection conn = borrow ();
+      try {
+         // issues the query instruction
+         ResultSet rs = conn.prepare (query, params).executeQuery ();
+         int numCol = rs.getMetaData ().getColumnCount ();
+
+         // iterates through the result set, keeping the last value seen
+         while (rs.next()){
+            result = rs.getString(numCol);
+            ++rowCount;
+         }//end while
+         rs.close ();
+      }finally{
+         release (conn);
+         Stats.call ("getSelectString", query, start, 1, rowCount);
+      }//end try
       return result;
    }
 
-   /*This function executes similarly to executeQuery, however we pass in a int count that will stop the output once K number of rows have been printed*/
-   public int executeQueryLimit (String query, int count) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+   /*This function executes similarly to executeQuery, but only the top count rows are printed. The query must end with its ORDER BY:
+    * count is appended as a bound LIMIT and set as the statement's max rows, so the server runs a top-N sort and only sends count rows.
+    * When the last column of the query is COUNT(*) OVER () AS qualifying it is not printed, instead the number of rows returned is
+    * reported against the number of rows that qualified for the sort.*/
+   public int executeQueryLimit (String query, int count, Object... params) throws SQLException {
+      Object[] bound = Arrays.copyOf (params, params.length + 1);
+      bound[params.length] = count;
+      long[] qualifying = {-1};
+      int rowCount = streamQuery ("executeQueryLimit", query + " LIMIT ?", count, rs -> printRows (rs, qualifying), bound);
+      if (qualifying[0] >= 0)
+         System.out.println (String.format ("Returned %d of %d qualifying rows", rowCount, qualifying[0]));
+      return rowCount;
+   }//end executeQueryLimit
+
+   /*Reads the result set of a query through a server side cursor, FETCH_SIZE rows per round trip, so large results never sit in memory at once.
+    * The bundled pg73jdbc3.jar cannot fetch in batches, with it the whole result is read by executeQuery as before, see fetchInBatches.
+    * maxRows caps the rows the statement returns, 0 for no cap. The reader gets the result set and returns the number of rows it consumed.
+    * helper names the calling method in the statistics.*/
+   private int streamQuery (String helper, String query, int maxRows, ResultReader reader, Object... params) throws SQLException {
+      long start = System.nanoTime ();
+      int rowCount = 0;
+      ConnectionPool.PooledConnection conn = borrow ();
+      Connection c = conn.connection ();
+      boolean transaction = false, cursor = false;
+      PreparedStatement stmt = null;
+      try {
+         stmt = conn.prepare (query, params);
+         cursor = fetchInBatches (stmt, FETCH_SIZE);
+         // Postgres only streams through a cursor inside a transaction, so autocommit is off while the rows are read
+         transaction = cursor && c.getAutoCommit ();
+         if (transaction)
+            c.setAutoCommit (false);
+         stmt.setMaxRows (maxRows);
+         Jobs.executing (stmt);
+         rowCount = reader.read (stmt.executeQuery ());
+         if (transaction)
+            c.commit ();
+         return rowCount;
+      }catch (SQLException e){
+         if (transaction)
+            c.rollback ();
+         throw e;
+      }finally{
+         Jobs.executed (stmt);
+         if (transaction)
+            c.setAutoCommit (true);
+         release (conn);
+         // one trip for the first batch of rows, one per further batch and one for the commit
+         Stats.call (helper, query, start, 1 + (cursor ? rowCount / FETCH_SIZE : 0) + (transaction ? 1 : 0), rowCount);
+      }//end try
+   }//end streamQuery
+
+   /*Asks the driver to fetch the rows of the statement fetchSize at a time. Returns false when the driver does not support it and reads
+    * whole results, as pg73jdbc3.jar does: its setFetchSize throws "not yet implemented".*/
+   static boolean fetchInBatches (Statement stmt, int fetchSize) {
+      try {
+         stmt.setFetchSize (fetchSize);
+         return true;
+      }catch (SQLException e){
+         return false;
+      }//end try
+   }//end fetchInBatches
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /* Consumes a streamed result set, see streamQuery */
+   private interface ResultReader {
+      int read (ResultSet rs) throws SQLException;
+   }//end ResultReader
+
+   /*Prints the rows of a result set to standard out with a header line.
+    * When qualifying is given and the last column is named qualifying, that column is not printed and its value is stored in qualifying[0].
+    * Rows go through the thread's RowFormatter, which writes them out in large chunks.*/
+   private int printRows (ResultSet rs, long[] qualifying) throws SQLException {
+      RowFormatter out = RowFormatter.get ();
 
       /*
        ** obtains the metadata object for the returned result set.  The metadata
@@ -215,42 +506,69 @@ public class DBProject {
       ResultSetMetaData rsmd = rs.getMetaData ();
       int numCol = rsmd.getColumnCount ();
       int rowCount = 0;
+      boolean hideLast = qualifying != null && rsmd.getColumnName (numCol).equalsIgnoreCase ("qualifying");
+      if (hideLast)
+         --numCol;
 
       // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-		System.out.print(rsmd.getColumnName(i) + "\t");
-	    }
-	    System.out.println();
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
-         if(count == rowCount)   {
-            break;
-         }
-      }//end while
-      stmt.close ();
+      try {
+         boolean outputHeader = true;
+         while (rs.next()){
+            Jobs.checkCancelled ();
+            if(outputHeader){
+               for(int i = 1; i <= numCol; i++){
+                  out.cell (rsmd.getColumnName(i));
+               }
+               out.endRow ();
+               outputHeader = false;
+               if (hideLast)
+                  qualifying[0] = rs.getLong (numCol + 1);
+            }
+            for (int i=1; i<=numCol; ++i)
+               out.cell (rs.getString (i));
+            out.endRow ();
+            ++rowCount;
+         }//end while
+         out.flush ();
+      }catch (IOException e){
+         throw new SQLException ("Error writing results: " + e.getMessage ());
+      }//end try
+      rs.close ();
       return rowCount;
-   }//end executeQuery
+   }//end printRows
 
-   /*This functions verifies a given date by using a created DateFormat. If the there is no error in given date we return true.
-    * Otherwise the format.parse will throw an exception meaning that format of date is not vaild.*/
+   /*Writes the current row of a result set to a RowFormatter, for reports that collect rows before printing them.*/
+   static void writeRow (ResultSet rs, RowFormatter out) throws SQLException {
+      try {
+         int numCol = rs.getMetaData ().getColumnCount ();
+         for (int i = 1; i <= numCol; ++i)
+            out.cell (rs.getString (i));
+         out.endRow ();
+      }catch (IOException e){
+         throw new SQLException ("Error writing results: " + e.getMessage ());
+      }//end try
+   }//end writeRow
+
+   /*Parses a numeric key (hotelID, roomNo, SSN, ...) typed by the user so it can be bound to a Numeric column.
+    * Throws NumberFormatException when the input is not a number.*/
+   public static Integer toKey(String input)   {
+       return Integer.valueOf(input.trim());
+   }
+
+   /*Parses a mm/dd/yyyy string typed by the user into a day, bound to a Date column through DateCodec.PARAM.
+    * Throws ParseException when the input is not a vaild date.*/
+   public static int toDay(String input) throws ParseException   {
+       return DateCodec.parseOrThrow(input);
+   }
+
+   /*This functions verifies a given date by parsing it with DateCodec. If the there is no error in given date we return true.
+    * Otherwise the date is not vaild and we return false.*/
    public boolean verifyDate(String date)   {
-       DateFormat format = new SimpleDateFormat("MM/dd/yyyy");
-       format.setLenient(false);
-       try   {
-           format.parse(date);
+       if(DateCodec.parse(date) != DateCodec.INVALID)   {
            return true;
        }
-       catch (ParseException e)   {
-           System.out.println("Error! The given string is an invaild date format.\nThe format of the string should follow month/day/year");
-           return false;
-       }
+       System.out.println("Error! The given string is an invaild date format.\nThe format of the string should follow month/day/year");
+       return false;
    }
 
    /*This functions verifies a given input by verifying that this input is a vaild number. This means that we only want those
@@ -285,6 +603,7 @@ public class DBProject {
            return 2; 
        }
        for(int i = 0; i < input.length(); i++)   {
+           c = input.charAt(i);
            if((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))   {
                continue;
            }
@@ -299,14 +618,18 @@ public class DBProject {
  *******************************************************************************/
 
    /**
-    * Method to close the physical connection if it is open.
+    * Method to flush the booking journal and close the physical connections
+    * of the pool if they are open.
     */
    public void cleanup(){
       try{
-         if (this._connection != null){
-            this._connection.close ();
+         if (this._journal != null){
+            this._journal.close ();
          }//end if
-      }catch (SQLException e){
+         if (this._pool != null){
+            this._pool.close ();
+         }//end if
+      }catch (Exception e){
          // ignored.
       }//end try
    }//end cleanup
@@ -314,15 +637,19 @@ public class DBProject {
    /**
     * The main execution method
     *
-    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+    * @param args the command line arguments this inclues the <dbname> <port> <user>, optionally followed by a mode
     */
    public static void main (String[] args) {
-      if (args.length != 3) {
+      if (args.length < 3 || (args.length > 3 && !Arrays.asList("load", "advise", "batch", "rollup", "partition", "analytics").contains(args[3]))) {
          System.err.println (
             "Usage: " +
             "java [-classpath <classpath>] " +
             DBProject.class.getName () +
-            " <dbname> <port> <user>");
+            " <dbname> <port> <user> [load <dataDir> [file.csv ...] | advise [index.sql] | batch [commands.txt] | rollup | partition [year|month] | analytics [rebuild]]");
+         return;
+      }//end if
+      if (args.length > 3) {
+         runMode(args);
          return;
       }//end if
       
@@ -338,8 +665,27 @@ public class DBProject {
          String user = args[2];
          esql = new DBProject (dbname, dbport, user, "");
 
+         System.out.print("Building availability index...");
+         System.out.println("Done (" + esql.availability ().summary () + ")");
+         System.out.print("Loading reference data...");
+         System.out.println("Done (" + esql.references ().summary () + ")");
+         System.out.print("Loading customer names...");
+         System.out.println("Done (" + esql.customerNames ().summary () + ")");
+         if (BookingColumnStore.ENABLED) {
+            System.out.print("Opening booking columns...");
+            System.out.println("Done (" + esql.bookingColumns ().summary () + ")");
+         }//end if
+         if (BookingJournal.ENABLED) {
+            System.out.print("Opening booking journal...");
+            System.out.println("Done (" + esql.journal ().summary () + ")");
+         }//end if
+         Stats.startDump ();
+         Jobs.start ();
+         final DBProject db = esql; // the menu operations run through Stats.operation, which needs a final reference
+
          boolean keepon = true;
          while(keepon) {
+            Jobs.announce();
             // These are sample SQL statements
 				System.out.println("MAIN MENU");
 				System.out.println("---------");
@@ -350,7 +696,7 @@ public class DBProject {
 				System.out.println("5. Add new Booking"); 
 				System.out.println("6. Assign house cleaning staff to a room");
 				System.out.println("7. Raise a repair request");
-				System.out.println("8. Get number of available rooms");
+				System.out.println("8. Get number of available rooms for a date range");
 				System.out.println("9. Get number of booked rooms");
 				System.out.println("10. Get hotel bookings for a week");
 				System.out.println("11. Get top k rooms with highest price for a date range");
@@ -358,27 +704,31 @@ public class DBProject {
 				System.out.println("13. Get customer total cost occurred for a give date range"); 
 				System.out.println("14. List the repairs made by maintenance company");
 				System.out.println("15. Get top k maintenance companies based on repair count");
-				System.out.println("16. Get number of repairs occurred per year for a given hotel room");
-				System.out.println("17. < EXIT");
+				System.out.println("16. Get number of repairs occurred per year for a given hotel room, hotel or all hotels");
+				System.out.println("17. Statistics");
+				System.out.println("18. Report jobs");
+				System.out.println("19. < EXIT");
 
             switch (readChoice()){
-				   case 1: addCustomer(esql); break;
-				   case 2: addRoom(esql); break;
-				   case 3: addMaintenanceCompany(esql); break;
-				   case 4: addRepair(esql); break;
-				   case 5: bookRoom(esql); break;
-				   case 6: assignHouseCleaningToRoom(esql); break;
-				   case 7: repairRequest(esql); break;
-				   case 8: numberOfAvailableRooms(esql); break;
-				   case 9: numberOfBookedRooms(esql); break;
-				   case 10: listHotelRoomBookingsForAWeek(esql); break;
-				   case 11: topKHighestRoomPriceForADateRange(esql); break;
-				   case 12: topKHighestPriceBookingsForACustomer(esql); break;
-				   case 13: totalCostForCustomer(esql); break;
-				   case 14: listRepairsMade(esql); break;
-				   case 15: topKMaintenanceCompany(esql); break;
-				   case 16: numberOfRepairsForEachRoomPerYear(esql); break;
-				   case 17: keepon = false; break;
+				   case 1: Stats.operation("addCustomer", () -> addCustomer(db)); break;
+				   case 2: Stats.operation("addRoom", () -> addRoom(db)); break;
+				   case 3: Stats.operation("addMaintenanceCompany", () -> addMaintenanceCompany(db)); break;
+				   case 4: Stats.operation("addRepair", () -> addRepair(db)); break;
+				   case 5: Stats.operation("bookRoom", () -> bookRoom(db)); break;
+				   case 6: Stats.operation("assignHouseCleaningToRoom", () -> assignHouseCleaningToRoom(db)); break;
+				   case 7: Stats.operation("repairRequest", () -> repairRequest(db)); break;
+				   case 8: Stats.operation("numberOfAvailableRooms", () -> numberOfAvailableRooms(db)); break;
+				   case 9: Stats.operation("numberOfBookedRooms", () -> numberOfBookedRooms(db)); break;
+				   case 10: Stats.operation("listHotelRoomBookingsForAWeek", () -> listHotelRoomBookingsForAWeek(db)); break;
+				   case 11: Stats.operation("topKHighestRoomPriceForADateRange", () -> topKHighestRoomPriceForADateRange(db)); break;
+				   case 12: Stats.operation("topKHighestPriceBookingsForACustomer", () -> topKHighestPriceBookingsForACustomer(db)); break;
+				   case 13: Stats.operation("totalCostForCustomer", () -> totalCostForCustomer(db)); break;
+				   case 14: Stats.operation("listRepairsMade", () -> listRepairsMade(db)); break;
+				   case 15: Stats.operation("topKMaintenanceCompany", () -> topKMaintenanceCompany(db)); break;
+				   case 16: Stats.operation("numberOfRepairsForEachRoomPerYear", () -> numberOfRepairsForEachRoomPerYear(db)); break;
+				   case 17: System.out.print(Stats.report()); System.out.println("\nReference cache: " + db.references().summary()); break;
+				   case 18: jobs(db); break;
+				   case 19: keepon = false; break;
 				   default : System.out.println("Unrecognized choice!"); break;
             }//end switch
          }//end while
@@ -388,6 +738,8 @@ public class DBProject {
          // make sure to cleanup the created table and close the connection.
          try{
             if(esql != null) {
+               System.out.println(esql._pool.metrics ());
+               Stats.dump (new File (Stats.DUMP_FILE));
                System.out.print("Disconnecting from database...");
                esql.cleanup ();
                System.out.println("Done\n\nBye !");
@@ -398,6 +750,52 @@ public class DBProject {
       }//end try
    }//end main
    
+   /*
+    * Runs one of the non-interactive modes given after <dbname> <port> <user> on the command line
+    **/
+   public static void runMode(String[] args) {
+      DBProject esql = null;
+      boolean ok = false;
+      try{
+         Class.forName ("org.postgresql.Driver");
+         esql = new DBProject (args[0], args[1], args[2], "");
+         if (args[3].equals("load")) {
+            File dir = new File(args.length > 4 ? args[4] : "../data");
+            ArrayList<String> files = new ArrayList<String>();
+            for (int i = 5; i < args.length; ++i)
+               files.add(args[i]);
+            ok = new BulkLoader(esql, dir).run(files);
+         }else if (args[3].equals("advise")) {
+            ok = new IndexAdvisor(esql, new File(args.length > 4 ? args[4] : "../sql/index_advised.sql")).run();
+         }else if (args[3].equals("rollup")) {
+            int[] rows = Rollups.rebuild(esql);
+            System.out.println("Rebuilt HotelDayRollup (" + rows[0] + " rows) and CustomerMonthRollup (" + rows[1] + " rows)");
+            ok = true;
+         }else if (args[3].equals("analytics")) {
+            int rows = esql.bookingColumns().refresh(args.length > 4 && args[4].equals("rebuild"));
+            System.out.println("Copied " + rows + " bookings (" + esql.bookingColumns().summary() + ")");
+            ok = true;
+         }else if (args[3].equals("partition")) {
+            ok = new PartitionMigrator(esql, args.length > 4 && args[4].equals("month")).run();
+         }else if (args[3].equals("batch")) {
+            BufferedReader commands = args.length > 4 ? new BufferedReader(new FileReader(args[4])) : in;
+            try {
+               ok = new BatchRunner(esql).run(commands, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16)));
+            }finally{
+               commands.close();
+            }//end try
+         }//end if
+      }catch(Exception e) {
+         System.err.println (e.getMessage ());
+      }finally{
+         if(esql != null) {
+            esql.cleanup ();
+         }//end if
+      }//end try
+      if (!ok)
+         System.exit(1);
+   }//end runMode
+
    public static void Greeting(){
       System.out.println(
          "\n\n*******************************************************\n" +
@@ -425,10 +823,45 @@ public class DBProject {
       return input;
    }//end readChoice
 
+   /*
+    * Lists the report jobs, then shows the output of a finished job or cancels a running one
+    **/
+   public static void jobs(DBProject esql) {
+      List<String> table = Jobs.list();
+      if (table.isEmpty()) {
+         System.out.println("No report jobs");
+         return;
+      }//end if
+      System.out.println(String.format("%5s  %-9s %11s %14s  %s", "job", "state", "time", "progress", "report"));
+      for (String line : table)
+         System.out.println(line);
+      do {
+         System.out.print("Enter a job number to show its output, C and a job number to cancel it, or nothing to return: ");
+         try {
+            String line = in.readLine().trim();
+            if (line.isEmpty())
+               return;
+            if (line.toUpperCase().startsWith("C")) {
+               int id = Integer.parseInt(line.substring(1).trim());
+               System.out.println(Jobs.cancel(id) ? "Job " + id + " is being cancelled" : "Error: job " + id + " is not running");
+               return;
+            }//end if
+            int id = Integer.parseInt(line);
+            if (!Jobs.show(id)) {
+               System.out.println("Error: job " + id + " is not finished or does not exist");
+               continue;
+            }//end if
+            return;
+         }catch (Exception e) {
+            System.out.println("Your input is invalid!");
+            continue;
+         }//end try
+      }while (true);
+   }//end jobs
+
    
    public static void addCustomer(DBProject esql){
 	  // Given customer details add the customer in the DB
-       ArrayList<String> custData = new ArrayList<String>();
        String inFirst;
        do { //Ask for first name
            System.out.print("Please enter customer's first name (Max 30 characters) or type \'CANCEL\' to return to main menu: ");
@@ -513,19 +946,13 @@ public class DBProject {
 
 	try {
 	       //Formatting and choosing ID
-	       int finalId = esql.errorChecker("SELECT C.customerID FROM Customer C;"); //Assuming that customers are never deleted, as such the number of rows = final id + 1
-	       custData.add(Integer.toString(finalId));
-	       custData.add(inFirst);
-	       custData.add(inLast);
-	       custData.add(inAddr);
-	       custData.add(inPhone);
-	       custData.add(inDate);
-	       custData.add(inGender);
-	       String finalUpdate = "INSERT INTO Customer (customerID, fName, lName, Address, phNo, DOB, gender) " + formatValues(custData) + ";";
-	       
-		//System.out.println(finalUpdate);
+	       int finalId = esql.customerKeys.nextKey();
+	       Long phone = esql.isEmpty(inPhone) ? null : Long.valueOf(inPhone.trim());
+	       Integer dob = esql.isEmpty(inDate) ? null : toDay(inDate);
 	       //Execute the update
-	       esql.executeUpdate(finalUpdate);
+	       esql.executeUpdate(INSERT_CUSTOMER,
+	               finalId, inFirst, inLast, inAddr, phone, dob, inGender);
+	       esql.customerNames().add(finalId, inFirst, inLast);
 	}
 	catch (Exception e) {
 		System.out.println(e.getMessage());
@@ -535,17 +962,16 @@ public class DBProject {
 
    public static void addRoom(DBProject esql){
 
-       ArrayList<String> roomData = new ArrayList<String>();
-       String inHotel;
+       Integer inHotel;
        do { //Ask for hotel ID. Assuming that the Hotel ID is information available to who would be using this.
            System.out.print("Please enter Hotel ID or type \'CANCEL\' to return to main menu: ");
            try {
-               inHotel = in.readLine();
-		if(inHotel.equals("CANCEL")) {
+               String line = in.readLine();
+		if(line.equals("CANCEL")) {
 			return;
 		}
-       	       int checkHotel = esql.errorChecker("SELECT * FROM Hotel H WHERE H.hotelID = \'" + inHotel + "\';");
-       		if (checkHotel < 1) {
+		inHotel = toKey(line);
+       	       if(!esql.references().hotel(inHotel)) {
          		System.out.println("Error: Hotel ID not found in database");
        	   		continue;
       		}
@@ -556,15 +982,13 @@ public class DBProject {
            }//end try
        }while (true);
 
-       String inNo;
+       Integer inNo;
        do { //Ask for room number
            System.out.print("Please enter room's number: ");
            try {
-               inNo = in.readLine();
+               inNo = toKey(in.readLine());
 		//Check for uniqueness in database. If the query has any rows there must be something with the same hotelID and roomno.
-	       int checkUniqueness = esql.errorChecker("SELECT * FROM Room R WHERE R.hotelID = \'" + inHotel + "\'" + " AND R.roomNo = \'" + inNo + "\';");
-
-	       if(checkUniqueness != 0) {
+	       if(esql.references().room(inHotel, inNo)) {
 		  System.out.println("Error: Room Number already exists for given HotelID");
 		  continue;
 	       }
@@ -595,11 +1019,9 @@ public class DBProject {
 
 
 	try {
-	  	roomData.add(inHotel);
-		roomData.add(inNo);
-		roomData.add(inType);
-		String finalUpdate = "INSERT INTO Room " + formatValues(roomData) + ";";
-		esql.executeUpdate(finalUpdate);
+		esql.executeUpdate(INSERT_ROOM, inHotel, inNo, inType);
+		esql.availability().addRoom(inHotel, inNo);
+		esql.references().addRoom(inHotel, inNo);
 	}
 	catch (Exception e) {
 		System.out.println(e);
@@ -609,18 +1031,17 @@ public class DBProject {
 
    public static void addMaintenanceCompany(DBProject esql){
       // Given maintenance Company details add the maintenance company in the DB
-      ArrayList<String> matData = new ArrayList<String>();
-      String incmpID;
+      Integer incmpID;
       do { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
            System.out.print("Please enter Company ID or type \'CANCEL\' to return to main menu: ");
            try {
-               incmpID = in.readLine();
-		if(incmpID.equals("CANCEL")) {
+               String line = in.readLine();
+		if(line.equals("CANCEL")) {
 			return;	
 		}
+		incmpID = toKey(line);
 	       //Check for uniqueness in database. If the query has any rows there must be something with the same hotelId and roomno.
-	       int check = esql.errorChecker("SELECT * FROM MaintenanceCompany M WHERE M.cmpID = \'" + incmpID + "\';");
-	       if(check != 0) {
+	       if(esql.references().company(incmpID)) {
 		  System.out.println("Error: company ID not unique.");
 		  continue;
 	       }
@@ -659,7 +1080,7 @@ public class DBProject {
            }//end try
       }while (true);
 
-     String inCert;
+     Boolean inCert;
       do { //Ask for certification status
 	   String temp;
            System.out.print("Is this company certified? (y/n)");
@@ -667,10 +1088,10 @@ public class DBProject {
                temp = in.readLine();
 			   temp = temp.toLowerCase();
                if (temp.equals("y") || temp.equals("yes")) {
-                  inCert = "TRUE";
+                  inCert = Boolean.TRUE;
                }
                else if (temp.equals("n") || temp.equals("no")) {
-                  inCert = "FALSE";
+                  inCert = Boolean.FALSE;
                }
                else {
                 System.out.println("Invalid input.");
@@ -685,12 +1106,8 @@ public class DBProject {
       }while (true);
 
 	try {
-		matData.add(incmpID);
-		matData.add(inName);
-		matData.add(inAddr);
-		matData.add(inCert);
-		String finalUpdate = "INSERT INTO MaintenanceCompany " + formatValues(matData) + ";";
-		esql.executeUpdate(finalUpdate);
+		esql.executeUpdate(INSERT_COMPANY, incmpID, inName, inAddr, inCert);
+		esql.references().addCompany(incmpID);
 	}
 	catch (Exception e) {
 		System.out.println(e);
@@ -701,233 +1118,212 @@ public class DBProject {
 
    public static void addRepair(DBProject esql){
 	  // Given repair details add repair in the DB
-      ArrayList<String> repData = new ArrayList<String>();
-
-      String inhID;
-      do { //Ask for hotel ID. Assuming that the hotel ID is information available to who would be using this.
+      Integer inhID = null, inRoomNo = null, inmID = null;
+      Integer inrDate = null;
+      String inDesc = null, inType = null;
+      do {
+      while (inhID == null) { //Ask for hotel ID. Assuming that the hotel ID is information available to who would be using this.
            System.out.print("Please enter Hotel ID or type \'CANCEL\' to return to main menu: ");
            try {
-               inhID = in.readLine();
-		if(inhID.equals("CANCEL")) {
+               String line = in.readLine();
+		if(line.equals("CANCEL")) {
 			return;
 		}
-               int check = esql.errorChecker("SELECT * FROM Hotel H WHERE H.hotelID = \'" + inhID + "\';");
-               if(check < 1) { //Make sure the hotel exists
-                  System.out.println("Error: hotel ID not found.");
-                  continue;
-               }
-               break;
+               inhID = toKey(line);
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
+      }//end while
 
-	}while(true);	
-
-      String inRoomNo;
-      do { //Ask for room number. Assuming that the room number is information available to who would be using this.
+      while (inRoomNo == null) { //Ask for room number. Assuming that the room number is information available to who would be using this.
            System.out.print("Please enter room number: ");
            try {
-               inRoomNo = in.readLine();
-
-               int check = esql.errorChecker("SELECT * FROM Room R WHERE R.roomNo = \'" + inRoomNo + "\' AND R.hotelID = \'" + inhID +"\';");
-               if(check < 1) { //Make sure the room exists in the specified hotel
-                  System.out.println("Error: room not found for given hotel.");
-                  continue;
-               }
-               break;
+               inRoomNo = toKey(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);        
+      }//end while
 
-      String inmID;
-      do { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
+      while (inmID == null) { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
            System.out.print("Please enter Company ID: ");
            try {
-               inmID = in.readLine();
-
-               int check = esql.errorChecker("SELECT * FROM MaintenanceCompany M WHERE M.cmpID = \'" + inmID + "\';");
-               if(check < 1) { //Make sure the maintenance company exists
-                  System.out.println("Error: company ID not found.");
-                  continue;
-               }
-               break;
+               inmID = toKey(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);  
+      }//end while
 
-      String inrDate;
-      do { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
+      while (inrDate == null) { //Ask for the date of the repair
            System.out.print("Please enter date of repair (mm/dd/yyyy): ");
            try {
-               inrDate = in.readLine();
-               break;
+               inrDate = toDay(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);  
+      }//end while
 
-      String inDesc;
-      do { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
+      while (inDesc == null) { //Ask for a description of the repair
            System.out.print("Please enter a description of the repair: ");
            try {
                inDesc = in.readLine();
-               break;
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);  
+      }//end while
 
-      String inType;
-      do { //Ask for company ID. Assuming that the company ID is information available to who would be using this.
+      while (inType == null) { //Ask for the type of repair
            System.out.print("Please enter the type of repair (Max 10 characters): ");
            try {
                inType = in.readLine();
-               break;
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);  
+      }//end while
 
-	try {
-	      int finalId = esql.errorChecker("SELECT rID FROM Repair"); //Assuming that repairs are never deleted, as such the number of rows = final id + 1
-	      repData.add(Integer.toString(finalId));
-	      repData.add(inhID);
-	      repData.add(inRoomNo);
-	      repData.add(inmID);
-	      repData.add(inrDate);
-	      repData.add(inDesc);
-	      repData.add(inType);
-
-	      String finalUpdate = "INSERT INTO Repair " + formatValues(repData) + ";";
-	      esql.executeUpdate(finalUpdate);
-	}
-	catch (Exception e) {
-		System.out.println("Error adding repair to SQL database: " + e.getMessage());
-	}
+      try { //The hotel, the room in that hotel and the maintenance company are checked in the reference cache, then the repair is inserted
+          int failed = !esql.references().hotel(inhID) ? 0 : !esql.references().room(inhID, inRoomNo) ? 1 : !esql.references().company(inmID) ? 2 : -1;
+          if(failed == 0) {
+             System.out.println("Error: hotel ID not found.");
+             inhID = null;
+             inRoomNo = null;
+             continue;
+          }
+          if(failed == 1) {
+             System.out.println("Error: room not found for given hotel.");
+             inRoomNo = null;
+             continue;
+          }
+          if(failed == 2) {
+             System.out.println("Error: company ID not found.");
+             inmID = null;
+             continue;
+          }
+          esql.executeUpdate(INSERT_REPAIR, esql.repairKeys.nextKey(), inhID, inRoomNo, inmID, inrDate, inDesc, inType);
+          break;
+      }catch (Exception e) {
+          System.out.println("Error adding repair to SQL database: " + e.getMessage());
+          return;
+      }//end try
+      }while (true);
 
     }//end addRepair
 
 
    public static void bookRoom(DBProject esql){
 	  // Given hotelID, roomNo and customer Name create a booking in the DB 
-    ArrayList<String> bookData = new ArrayList<String>();
-
-    String incID;
-    do { //Ask for customer ID. Assuming that the customer ID is information available to who would be using this.
+    Integer incID = null, inhID = null, inRoomNo = null, inNumPpl = null;
+    Integer inBookDate = null;
+    BigDecimal inPrice = null;
+    do {
+    while (incID == null) { //Ask for customer ID. Assuming that the customer ID is information available to who would be using this.
           System.out.print("Please enter Customer ID or type \'CANCEL\' to return to main menu: ");
           try {
-              incID = in.readLine();
-	      if(incID.equals("CANCEL")) {
+              String line = in.readLine();
+	      if(line.equals("CANCEL")) {
 		return;
 		}
-              int check = esql.errorChecker("SELECT * FROM Customer C WHERE C.customerID = \'" + incID + "\';");
-              if(check < 1) { //Make sure the customer exists
-                System.out.println("Error: customer ID not found.");
-                continue;
-              }
-              break;
+              incID = toKey(line);
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
           }//end try
-        }while (true);
+        }//end while
 
-    String inhID;
-    do { //Ask for hotel ID. Assuming that the hotel ID is information available to who would be using this.
+    while (inhID == null) { //Ask for hotel ID. Assuming that the hotel ID is information available to who would be using this.
           System.out.print("Please enter Hotel ID: ");
           try {
-              inhID = in.readLine();
-              int check = esql.errorChecker("SELECT * FROM Hotel H WHERE H.hotelID = \'" + inhID + "\';");
-              if(check < 1) { //Make sure the hotel exists
-                System.out.println("Error: hotel ID not found.");
-                continue;
-              }
-              break;
+              inhID = toKey(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
           }//end try
-        }while (true);
+        }//end while
 
-    String inRoomNo;
-      do { //Ask for room number. Assuming that the room number is information available to who would be using this.
+      while (inRoomNo == null) { //Ask for room number. Assuming that the room number is information available to who would be using this.
            System.out.print("Please enter room number: ");
            try {
-               inRoomNo = in.readLine();
-               int check = esql.errorChecker("SELECT * FROM Room R WHERE R.roomNo = \'" + inRoomNo + "\' AND R.hotelID = \'" + inhID +"\';");
-               if(check < 1) { //Make sure the room exists in the specified hotel
-                  System.out.println("Error: room not found for given hotel.");
-                  continue;
-               }
-               break;
+               inRoomNo = toKey(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);       
+      }//end while
 
-    String inBookDate;
-      do { //Ask for Booking Date. Assuming that the Booking Date is information available to who would be using this.
+      while (inBookDate == null) { //Ask for Booking Date. Assuming that the Booking Date is information available to who would be using this.
            System.out.print("Please enter booking date (mm/dd/yyyy): ");
            try {
-               inBookDate = in.readLine();
-               break;
+               inBookDate = toDay(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);   
+      }//end while
 
-      String inNumPpl;
-      do { //Ask for Booking Date. Assuming that the Booking Date is information available to who would be using this.
+      while (inNumPpl == null) { //Ask for the number of guests
            System.out.print("Please enter number of guests: ");
            try {
-               inNumPpl = in.readLine();
-               break;
+               inNumPpl = toKey(in.readLine());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);   
+      }//end while
 
-      String inPrice;
-      do { //Ask for Booking Date. Assuming that the Booking Date is information available to who would be using this.
+      while (inPrice == null) { //Ask for the price of the booking
            System.out.print("Please enter price (Dollars and Cents seperated by .): ");
            try {
-               inPrice = in.readLine();
-               //TODO: Maybe do some data validation here.
-               break;
+               inPrice = new BigDecimal(in.readLine().trim());
            }catch (Exception e) {
                System.out.println("Your input is invalid!");
-               continue;
            }//end try
-      }while (true);   
+      }//end while
 
-	try {
-	      int finalId = esql.errorChecker("SELECT bID FROM Booking" ); //Assuming that bookings are never deleted, as such the number of rows = final id + 1
-	      bookData.add(Integer.toString(finalId));
-	      bookData.add(incID);
-	      bookData.add(inhID);
-	      bookData.add(inRoomNo);
-	      bookData.add(inBookDate);
-	      bookData.add(inNumPpl);
-	      bookData.add(inPrice);
-
-	      String finalUpdate = "INSERT INTO Repair " + formatValues(bookData) + ";";
-		System.out.println(finalUpdate);
-	      esql.executeUpdate(finalUpdate);
-	}
-	catch (Exception e) {
-		System.out.println(e);
-	}
+      try { //The hotel and the room in that hotel are checked in the reference cache, the customer is checked, the booking inserted and the rollups updated in one statement
+          int failed = !esql.references().hotel(inhID) ? 1 : !esql.references().room(inhID, inRoomNo) ? 2 : -1;
+          if(failed < 0 && BookingJournal.ENABLED) { //In write-behind mode the booking is journaled once the customer is known, and inserted later by the journal
+             int cents;
+             try {
+                cents = inPrice.movePointRight(2).intValueExact();
+             }catch (ArithmeticException e) {
+                cents = Integer.MAX_VALUE;
+             }//end try
+             if(Math.abs(cents) >= 1000000) { //price is Numeric(6,2), checked here as the database only sees it after the booking was acknowledged
+                System.out.println("Error: the price must be below 10000.00 with at most 2 decimals.");
+                inPrice = null;
+                continue;
+             }
+             if(esql.customerNames().customer(incID) == null && !esql.exists(CUSTOMER_EXISTS, incID)) {
+                failed = 0;
+             }else {
+                int finalId = esql.bookingKeys.nextKey();
+                esql.journal().append(finalId, incID, inhID, inRoomNo, inBookDate, inNumPpl, cents);
+                System.out.println("Booking " + finalId + " accepted.");
+             }//end if
+          }else if(failed < 0) {
+             int finalId = esql.bookingKeys.nextKey();
+             failed = esql.insertChecked(INSERT_BOOKING, new Object[] {finalId, incID, inhID, inRoomNo, inBookDate, inNumPpl, inPrice},
+                     new String[] { CUSTOMER_EXISTS }, new Object[][] { {incID} }, Rollups.DAY_FROM_INSERTED, Rollups.MONTH_FROM_INSERTED);
+          }
+          if(failed == 0) {
+             System.out.println("Error: customer ID not found.");
+             incID = null;
+             continue;
+          }
+          if(failed == 1) {
+             System.out.println("Error: hotel ID not found.");
+             inhID = null;
+             inRoomNo = null;
+             continue;
+          }
+          if(failed == 2) {
+             System.out.println("Error: room not found for given hotel.");
+             inRoomNo = null;
+             continue;
+          }
+          if(!BookingJournal.ENABLED)   { //a journaled booking is marked in the availability index by the journal once it is inserted
+             esql.availability().book(inhID, inRoomNo, inBookDate);
+          }
+          break;
+      }catch (Exception e) {
+          System.out.println(e);
+          return;
+      }//end try
+    }while (true);
 
    }//end bookRoom
 
@@ -938,9 +1334,7 @@ public class DBProject {
         String userIn_1 = "";
         String userIn_2 = "";
         String userIn_3 = "";
-        int errorResult = 0;
-        String errorCheck = "";
-        String employerID = "";
+        int employerID = 0;
 
         /*Here we ask for the Staff SSN to be used. We verify that input is not:
          * Empty
@@ -961,12 +1355,11 @@ public class DBProject {
                 if(esql.verifyNumber(userIn_1) == false)   {
                     throw new Exception(String.format("Error! A Staff SSN cannot contain letters or special characters"));
                 }
-                errorCheck = String.format("SELECT s.SSN FROM Staff s WHERE s.SSN = %s and s.role = 'HouseCleaning';", userIn_1);
-                errorResult = esql.errorChecker(errorCheck);
-                if(errorResult == 0)   {
+                ReferenceCache.Staff cleaner = esql.references().staff(toKey(userIn_1));
+                if(cleaner == null || !cleaner.role.equals("HouseCleaning"))   {
                     throw new Exception(String.format("Error %s is not a vaild employee/this employee's role is not in house cleaning", userIn_1));
                 }
-                employerID = esql.getSelectString(String.format("SELECT s.employerID FROM Staff s WHERE s.SSN = %s", userIn_1));
+                employerID = cleaner.employerID;
                 break;
             }
             catch (Exception e)   {
@@ -991,9 +1384,7 @@ public class DBProject {
                 if(esql.verifyNumber(userIn_2) == false)   {
                     throw new Exception(String.format("Error! A hotelID cannot contain letters or special characters"));
                 }
-                errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s and h.hotelID = %s;", userIn_2, employerID);
-                errorResult = esql.errorChecker(errorCheck);
-                if(errorResult == 0)   {
+                if(!esql.references().hotel(toKey(userIn_2)) || toKey(userIn_2) != employerID)   {
                     throw new Exception(String.format("Error %s is not a vaild HotelID in the Hotel table, or employee with SSN %s does not work in specified hotel!", userIn_2, userIn_1));
                 }
                 break;
@@ -1016,24 +1407,22 @@ public class DBProject {
                 if(esql.isEmpty(userIn_3))   {
                     throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
                 }
-                errorCheck = String.format("SELECT r.roomNo FROM Room r, Hotel h WHERE h.hotelID = %s and r.roomNo = %s;", userIn_2, userIn_3);
-                errorResult = esql.errorChecker(errorCheck);
                 if(esql.verifyNumber(userIn_3) == false)   {
                     throw new Exception(String.format("Error! A room number cannot contain letters or special characters"));
                 }
-                if(errorResult == 0)   {
+                if(!esql.references().room(toKey(userIn_2), toKey(userIn_3)))   {
                     throw new Exception(String.format("Error %s is not a vaild room in given HotelID %s", userIn_3, userIn_2));
                 }
                 break;
             }
             catch(Exception e)   {
+                System.out.println(e.getMessage());
                 continue;
             }
         }while(true);
-        int assignVal = (Integer.parseInt(esql.getSelectString("SELECT MAX(asgID) FROM Assigned;")) + 1);
+        int assignVal = esql.assignedKeys.nextKey();
 
-        String insertStatement = String.format("INSERT INTO Assigned(asgID, staffID, hotelID, roomNo) VALUES(%s, %s, %s, %s)", Integer.toString(assignVal), userIn_1, userIn_2, userIn_3);
-        esql.executeUpdate(insertStatement);
+        esql.executeUpdate(INSERT_ASSIGNED, assignVal, toKey(userIn_1), toKey(userIn_2), toKey(userIn_3));
         System.out.println(String.format("StaffID %s was assigned to clean room number %s at hotelID %s. The value of the asgID for the job was %s", userIn_1, userIn_3, userIn_2, Integer.toString(assignVal)));
 
       }
@@ -1047,8 +1436,6 @@ public class DBProject {
       // Your code goes here.
       try {
           String userIn_1 = "", userIn_2 = "", userIn_3 = "", userIn_4 = "", userIn_5 = "", issue = "";
-          String errorCheck = "";
-          int errorResult = 0;
 
         /*Here we ask for the Hotel hotelID to be used. We verify that input is not:
          * Empty
@@ -1066,12 +1453,10 @@ public class DBProject {
                   if(esql.isEmpty(userIn_1))   {
                       throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
                   }
-                  errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s;", userIn_1);
                   if(esql.verifyNumber(userIn_1) == false)   {
                       throw new Exception(String.format("Error a hotelID must not contain special characters or letters"));
                   }
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().hotel(toKey(userIn_1)))   {
                       throw new Exception(String.format("Error %s is not a vaild HotelID in the Hotel table!", userIn_1));
                   }
                   break;
@@ -1097,9 +1482,7 @@ public class DBProject {
                   if(esql.verifyNumber(userIn_2) == false)   {
                       throw new Exception(String.format("Error a Staff SSN must not contain special characters or letters"));
                   }
-                  errorCheck = String.format("SELECT s.SSN FROM Staff s WHERE s.SSN = %s and s.role = 'Manager' and s.employerID = %s;", userIn_2, userIn_1);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().staff(toKey(userIn_2), "Manager", toKey(userIn_1)))   {
                       throw new Exception(String.format("Error %s is not a vaild employee/this employee's role is not a Manager, or the Manager specified does not work at this hotel", userIn_2));
                   }
                   break;
@@ -1123,9 +1506,7 @@ public class DBProject {
                   if(esql.verifyNumber(userIn_3) == false)   {
                       throw new Exception(String.format("Error a room number must not contain special characters or letters"));
                   }
-                  errorCheck = String.format("SELECT r.roomNo FROM Room r, Hotel h WHERE h.hotelID = %s and r.roomNo = %s;", userIn_1, userIn_3);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().room(toKey(userIn_1), toKey(userIn_3)))   {
                       throw new Exception(String.format("Error %s is not a vaild room in given HotelID %s", userIn_3, userIn_1));
                   }
                   break;
@@ -1151,9 +1532,7 @@ public class DBProject {
                   if(esql.verifyNumber(userIn_4) == false)   {
                       throw new Exception(String.format("Error a repairID number must not contain special characters or letters"));
                   } 
-                  errorCheck = String.format("SELECT rep.rID FROM Repair rep WHERE rep.rID = %s;", userIn_4);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.exists(REPAIR_EXISTS, toKey(userIn_4)))   {
                       throw new Exception(String.format("Error %s is not a vaild repairID", userIn_4));
                   }
                   break;
@@ -1178,9 +1557,7 @@ public class DBProject {
                   if(esql.verifyDate(userIn_5) == false)   {
                       throw new Exception("");
                   }
-                  errorCheck = String.format("SELECT rep.repairDate FROM Repair rep WHERE rep.rID = %s and rep.repairDate = '%s';", userIn_4, userIn_5);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult > 0)   {
+                  if(esql.exists(REPAIR_ON_DATE_EXISTS, toKey(userIn_4), toDay(userIn_5)))   {
                       throw new Exception(String.format("Error repairID %s is already scheduled for %s", userIn_4, userIn_5));
                   }
                   break;
@@ -1191,7 +1568,7 @@ public class DBProject {
               }
           }while(true);
 
-        int requestVal = (Integer.parseInt(esql.getSelectString("SELECT MAX(reqID) FROM Request")) + 1);
+        int requestVal = esql.requestKeys.nextKey();
         
         /*Here we ask for a brief description to be used. We verify that input is not:
          * Empty
@@ -1217,8 +1594,7 @@ public class DBProject {
             }
         }while(true);
 
-        String repairRequest = String.format("INSERT INTO Request(reqID, managerID, repairID, requestDate, description) VALUES (%s, %s, %s, '%s'::date, '%s')", Integer.toString(requestVal), userIn_2, userIn_4, userIn_5, issue);
-        esql.executeUpdate(repairRequest);
+        esql.executeUpdate(INSERT_REQUEST, requestVal, toKey(userIn_2), toKey(userIn_4), toDay(userIn_5), issue);
         System.out.println(String.format("Request for roomNo %s at HotelID %s was created by managerID %s. The repairID %s is scheduled for %s and has been assigned a requestID of %s", userIn_3, userIn_1, userIn_2, userIn_4, userIn_5, Integer.toString(requestVal)));
 
       }
@@ -1228,12 +1604,10 @@ public class DBProject {
    }//end repairRequest
    
    public static void numberOfAvailableRooms(DBProject esql){
-	  // Given a hotelID, get the count of rooms available 
+	  // Given a hotelID and a date range, get the rooms available for the whole range
       // Your code goes here.
       try {
           String userIn_1 = "";
-          String errorCheck = "";
-          int errorResult = 0;
           
         /*Here we ask for the Hotel hotelID to be used. We verify that input is not:
          * Empty
@@ -1241,22 +1615,23 @@ public class DBProject {
          * That the hotelID is a vaild hotelID*/
           do   {
               try   {
-                  System.out.println("Insert a hotelID to get a count of available rooms");
+                  System.out.println("Insert a hotelID to get a count of available rooms, or ALL for every hotel");
                   System.out.println("Or type cancel if you chose the wrong menu option");
                   userIn_1 = in.readLine();
                   userIn_1 = userIn_1.toLowerCase();
                   if(userIn_1.equals("cancel"))   {
                     return;
                   }
+                  if(userIn_1.equals("all"))   {
+                    break;
+                  }
                   if(esql.isEmpty(userIn_1))   {
                       throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
                   }
                   if(esql.verifyNumber(userIn_1) == false)   {
                       throw new Exception(String.format("Error a hotelID number must not contain special characters or letters"));
                   } 
-                  errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s", userIn_1);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().hotel(toKey(userIn_1)))   {
                       throw new Exception(String.format("Error! %s is not a vaild hotelID", userIn_1));
                   }
                   break;
@@ -1267,9 +1642,63 @@ public class DBProject {
               }
           }while(true);
 
-          String availableRoom = String.format("SELECT notBooked.roomNo, notBooked.hotelID FROM (SELECT r.roomNo, r.hotelID FROM Room r EXCEPT (SELECT b.roomNo, b.hotelID FROM Booking b)) as notBooked WHERE notBooked.hotelID = %s", userIn_1);
-          int rowCount = esql.executeQuery(availableRoom);
-          System.out.println("total rows: " + rowCount);
+        /*Here we ask for the date range to check. We verify that input is:
+         * A vaild date format (date being month/day/year)
+         * For the end date, either empty (only the start date is checked) or not before the start date*/
+          int first, last;
+          do   {
+              try   {
+                  System.out.println("Please enter the first day the room is needed (mm/dd/yyyy)");
+                  first = toDay(in.readLine());
+                  System.out.println("Please enter the last day the room is needed (mm/dd/yyyy), or leave it empty for a single day");
+                  String line = in.readLine();
+                  last = esql.isEmpty(line.trim()) ? first : toDay(line);
+                  if(last < first)   {
+                      throw new Exception("Error! The last day cannot be before the first day");
+                  }
+                  break;
+              }
+              catch (Exception e)   {
+                  System.out.println(e instanceof ParseException ? "Error! The format of the date should follow month/day/year" : e.getMessage());
+                  continue;
+              }
+          }while(true);
+
+          //Rooms without a booking in the range are found in the in-memory availability index, which first reads the bookings added since the last report
+          final int firstDay = first, lastDay = last;
+          if(userIn_1.equals("all"))   {
+              final int[] hotels = esql.references().hotels();
+              Jobs.submit("numberOfAvailableRooms ALL", () -> {
+                  esql.availability().refresh(esql);
+                  long rows = HotelFanOut.run(hotels, new String[] {"roomNo", "hotelID"}, (firstHotel, lastHotel, range, out) -> {
+                      for (int hotel : range)   {
+                          for (int roomNo : esql.availability().availableRooms(hotel, firstDay, lastDay))   {
+                              out.cell(Integer.toString(roomNo));
+                              out.cell(Integer.toString(hotel));
+                              out.endRow();
+                          }
+                      }
+                  });
+                  System.out.println("total rows: " + rows);
+              });
+              return;
+          }
+          final int hotelID = toKey(userIn_1);
+          Jobs.submit("numberOfAvailableRooms", () -> {
+              esql.availability().refresh(esql);
+              int[] free = esql.availability().availableRooms(hotelID, firstDay, lastDay);
+              RowFormatter out = RowFormatter.get();
+              out.cell("roomNo");
+              out.cell("hotelID");
+              out.endRow();
+              for (int roomNo : free)   {
+                  out.cell(Integer.toString(roomNo));
+                  out.cell(Integer.toString(hotelID));
+                  out.endRow();
+              }
+              out.flush();
+              System.out.println("total rows: " + free.length);
+          });
       }
       catch(Exception e)   {
         System.out.println(e.getMessage());
@@ -1284,30 +1713,29 @@ public class DBProject {
         IT WAS BOOKED ON A DIFFERENT DATE*/
       try {
           String userIn_1 = "";
-          String errorCheck = "";
-          int errorResult = 0;
         /*Here we ask for the Hotel hotelID to be used. We verify that input is not:
          * Empty
          * It is a vaild number format for the query (numeric)
          * That the hotelID is a vaild hotelID*/
           do   {
               try   {
-                  System.out.println("Insert a hotelID to get a count of booked rooms");
+                  System.out.println("Insert a hotelID to get a count of booked rooms, or ALL for every hotel");
                   System.out.println("Or type cancel if you chose the wrong menu option");
                   userIn_1 = in.readLine();
                   userIn_1 = userIn_1.toLowerCase();
                   if(userIn_1.equals("cancel"))   {
                     return;
                   }
+                  if(userIn_1.equals("all"))   {
+                    break;
+                  }
                   if(esql.isEmpty(userIn_1))   {
                       throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
                   }
                   if(esql.verifyNumber(userIn_1) == false)   {
                       throw new Exception(String.format("Error a hotelID number must not contain special characters or letters"));
                   } 
-                  errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s", userIn_1);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().hotel(toKey(userIn_1)))   {
                       throw new Exception(String.format("Error! %s is not a vaild hotelID", userIn_1));
                   }
                   break;
@@ -1317,9 +1745,18 @@ public class DBProject {
                   continue;
               }
           }while(true);
-          String bookedRoom = String.format("SELECT b.roomNo FROM Booking b WHERE b.hotelID = %s", userIn_1);
-          int rowCount = esql.executeQuery(bookedRoom);
-          System.out.println("total rows: " + rowCount);
+          if(userIn_1.equals("all"))   {
+              final int[] hotels = esql.references().hotels();
+              Jobs.submit("numberOfBookedRooms ALL", () -> {
+                  long rows = HotelFanOut.run(hotels, new String[] {"hotelID", "bookedrooms"}, (firstHotel, lastHotel, range, out) ->
+                      esql.forEachRow(BOOKED_ROOMS_RANGE, rs -> writeRow(rs, out), firstHotel, lastHotel));
+                  System.out.println("total rows: " + rows);
+              });
+              return;
+          }
+          final Integer hotelID = toKey(userIn_1);
+          //The count comes from HotelDayRollup, one row per day the hotel had bookings instead of one per booking
+          Jobs.submit("numberOfBookedRooms", () -> esql.executeQuery(BOOKED_ROOMS, hotelID));
       }
       catch(Exception e)   {
         System.out.println(e.getMessage());
@@ -1336,30 +1773,29 @@ public class DBProject {
        */
       try {
           String userIn_1 = "", userIn_2 = "";
-          String errorCheck = "";
-          int errorResult = 0;
         /*Here we ask for the Hotel hotelID to be used. We verify that input is not:
          * Empty
          * It is a vaild number format for the query (numeric)
          * That the hotelID is a vaild hotelID*/
           do   {
               try   {
-                  System.out.println("Insert a hotelID to get a count of available rooms");
+                  System.out.println("Insert a hotelID to get a count of available rooms, or ALL for every hotel");
                   System.out.println("Or type cancel if you chose the wrong menu option");
                   userIn_1 = in.readLine();
                   userIn_1 = userIn_1.toLowerCase();
                   if(userIn_1.equals("cancel"))   {
                     return;
                   }
+                  if(userIn_1.equals("all"))   {
+                    break;
+                  }
                   if(esql.isEmpty(userIn_1))   {
                       throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
                   }
                   if(esql.verifyNumber(userIn_1) == false)   {
                       throw new Exception(String.format("Error a hotelID number must not contain special characters or letters"));
                   } 
-                  errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s", userIn_1);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().hotel(toKey(userIn_1)))   {
                       throw new Exception(String.format("Error! %s is not a vaild hotelID", userIn_1));
                   }
                   break;
@@ -1393,9 +1829,30 @@ public class DBProject {
           }while(true);
 
 
-          String availableRoom = String.format("SELECT r.roomNo FROM Room r, (SELECT b.hotelID, b.roomNo FROM Booking b WHERE date_trunc('week', b.bookingDate) = date_trunc('week', '%s'::date) and b.hotelID = %s) as booked WHERE r.hotelID = booked.hotelID and r.roomNo != booked.roomNo;", userIn_2, userIn_1);
-          int rowCount = esql.executeQuery(availableRoom);
-          System.out.println("Total rows: " + rowCount);
+          // the grid runs from the Monday of the week up to the next Monday, see WeekGrid
+          final int monday = DateCodec.monday(toDay(userIn_2));
+          final long[] counts = new long[2];
+          if(userIn_1.equals("all"))   {
+              final int[] hotels = esql.references().hotels();
+              Jobs.submit("listHotelRoomBookingsForAWeek ALL", () -> {
+                  HotelFanOut.run(hotels, WeekGrid.header(monday, true), (firstHotel, lastHotel, range, out) ->
+                      WeekGrid.write(esql, firstHotel, lastHotel, monday, true, out, counts));
+                  System.out.println("Total rows: " + counts[0]);
+                  System.out.println("Rooms free all week: " + counts[1]);
+              });
+              return;
+          }
+          final int hotelID = toKey(userIn_1);
+          Jobs.submit("listHotelRoomBookingsForAWeek", () -> {
+              RowFormatter out = RowFormatter.get();
+              for (String column : WeekGrid.header(monday, false))
+                  out.cell(column);
+              out.endRow();
+              WeekGrid.write(esql, hotelID, hotelID, monday, false, out, counts);
+              out.flush();
+              System.out.println("Total rows: " + counts[0]);
+              System.out.println("Rooms free all week: " + counts[1]);
+          });
 
 
       }
@@ -1408,8 +1865,7 @@ public class DBProject {
 	  // List Top K Rooms with the highest price for a given date range
       // Your code goes here.
       try {
-          String userIn = "", startDate = "", endDate = "", errorCheck = "";
-          int errorResult = 0;
+          String userIn = "", startDate = "", endDate = "";
         /*Here we ask for a start date to be used. We verify that input is not:
          * Empty
          * It is a vaild date format for the query (date being month/day/year)*/
@@ -1477,8 +1933,13 @@ public class DBProject {
                   continue;
               }
           }while(true);
-          String query = String.format("SELECT r.roomType, r.roomNo, b.price, b.bookingDate FROM Room r, Booking b WHERE r.roomNo = b.roomNo and r.hotelID = b.hotelID and (b.bookingDate BETWEEN '%s'::date and '%s'::date) ORDER BY b.price DESC;", startDate, endDate);
-          esql.executeQueryLimit(query,Integer.parseInt(userIn));
+          final int k = Integer.parseInt(userIn);
+          final int from = toDay(startDate), to = toDay(endDate);
+          if(BookingColumnStore.ENABLED)   {
+              Jobs.submit("topKHighestRoomPriceForADateRange", () -> esql.bookingColumns().printTopRooms(from, to, k));
+              return;
+          }
+          Jobs.submit("topKHighestRoomPriceForADateRange", () -> esql.executeQueryLimit(TOP_K_BOOKED_ROOMS, k, from, to));
 
       }
       catch(Exception e)   {
@@ -1486,83 +1947,118 @@ public class DBProject {
       }
    }//end topKHighestRoomPriceForADateRange
    
-   public static void topKHighestPriceBookingsForACustomer(DBProject esql){
-	  // Given a customer Name, List Top K highest booking price for a customer 
-      // Your code goes here.
-      try {
-          String fName = "", lName = "", userIn = "", errorCheck = "";
-          int errorResult = 0, textResult = 0;
+   /*Asks for a customer's first and last name and returns the customerID, or null when the user cancels. The names are looked up
+    * in the customer name dictionary, ignoring case, and may be given as prefixes. When several customers match they are listed and
+    * the user picks one by ID.*/
+   public static Integer readCustomer(DBProject esql) throws Exception {
+      String fName = "", lName = "";
+      int textResult = 0;
+      CustomerNames names = esql.customerNames();
+
         /*Here we ask for first name to be used. We verify that input is not:
          * Empty
-         * Is a vaild first name from the Customer Table
          * Is formated as a text value (does not include digits or special characters)
          * Does not exceed the length of an entry for text in the request table (which is a char(30))*/
-          do   {
-              try   {
-                  System.out.println("Please enter a customer's first name");
-                  System.out.println("Or type cancel if you chose the wrong menu option");
-                  fName = in.readLine();
-                  String temp = fName.toLowerCase();
-                  if(temp.equals("cancel"))   {
-                    return;
-                  }
-                  if(fName.equals("cancel"))   {
-                    return;
-                  }
-                  if(esql.isEmpty(fName))   {
-                      throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
-                  }
-                  textResult = esql.verifyText(fName);
-                  if(textResult == 2)  {
-                      throw new Exception("The length of the customer's first name must not exceed 30 characters");
-                  }
-                  else if(textResult == 1)   {
-                      throw new Exception("Error! A customer's first name must not include digits or special characters");
-                  }
-                  errorCheck = String.format("SELECT c.fName FROM Customer c WHERE c.fName = '%s'", fName);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
-                      throw new Exception(String.format("Error! The customer with first name of %s does not exist in the table of customer", fName));
-                  }
-                  break;
+      do   {
+          try   {
+              System.out.println("Please enter a customer's first name, or the start of it");
+              System.out.println("Or type cancel if you chose the wrong menu option");
+              fName = in.readLine();
+              if(fName.toLowerCase().equals("cancel"))   {
+                return null;
               }
-              catch (Exception e)    {
-                  System.out.println(e.getMessage());
-                  continue;
+              if(esql.isEmpty(fName))   {
+                  throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
               }
-          }while(true);
-          
+              textResult = esql.verifyText(fName);
+              if(textResult == 2)  {
+                  throw new Exception("The length of the customer's first name must not exceed 30 characters");
+              }
+              else if(textResult == 1)   {
+                  throw new Exception("Error! A customer's first name must not include digits or special characters");
+              }
+              break;
+          }
+          catch (Exception e)    {
+              System.out.println(e.getMessage());
+              continue;
+          }
+      }while(true);
+
         /*Here we ask for last name to be used. We verify that input is not:
          * Empty
-         * Is a vaild last name from the Customer Table
+         * Together with the first name matches at least one customer, in the dictionary or else in the Customer Table
          * Is formated as a text value (does not include digits or special characters)
          * Does not exceed the length of an entry for text in the request table (which is a char(30))*/
-          do   {
-              try   {
-                  System.out.println("Please enter a customer's last name");
-                  lName = in.readLine();
-                  if(esql.isEmpty(lName))   {
-                      throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
-                  }
-                  textResult = esql.verifyText(lName);
-                  if(textResult == 2)  {
-                      throw new Exception("The length of the customer's last name must not exceed 30 characters");
-                  }
-                  else if(textResult == 1)   {
-                      throw new Exception("Error! A customer's last name must not include digits or special characters");
-                  }
-                  errorCheck = String.format("SELECT c.lName FROM Customer c WHERE c.lName = '%s'", lName);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
-                      throw new Exception(String.format("Error! The customer with last name of %s does not exist in the table of customer", lName));
-                  }
-                  break;
+      List<CustomerNames.Match> matches;
+      do   {
+          try   {
+              System.out.println("Please enter a customer's last name, or the start of it");
+              lName = in.readLine();
+              if(esql.isEmpty(lName))   {
+                  throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
               }
-              catch (Exception e)    {
-                  System.out.println(e.getMessage());
-                  continue;
+              textResult = esql.verifyText(lName);
+              if(textResult == 2)  {
+                  throw new Exception("The length of the customer's last name must not exceed 30 characters");
               }
-          }while(true);
+              else if(textResult == 1)   {
+                  throw new Exception("Error! A customer's last name must not include digits or special characters");
+              }
+              matches = names.find(fName, lName, CUSTOMER_CHOICES + 1);
+              if(matches.isEmpty())   {
+                  throw new Exception(String.format("Error! There is no customer named %s %s in the table of customer", fName, lName));
+              }
+              break;
+          }
+          catch (Exception e)    {
+              System.out.println(e.getMessage());
+              continue;
+          }
+      }while(true);
+
+      if(matches.size() == 1)   {
+          return matches.get(0).customerID;
+      }
+
+        /*Here we list the matching customers and ask for the customerID of the one to use. We verify that input is:
+         * A vaild number format (numeric)
+         * One of the listed customerIDs*/
+      System.out.println(String.format("%s customers match, please choose one by ID:", matches.size() > CUSTOMER_CHOICES ? "More than " + CUSTOMER_CHOICES : Integer.toString(matches.size())));
+      for (CustomerNames.Match m : matches.subList(0, Math.min(CUSTOMER_CHOICES, matches.size())))   {
+          System.out.println(String.format("%10d  %s %s", m.customerID, m.fName, m.lName));
+      }
+      do   {
+          try   {
+              System.out.println("Please enter the customerID");
+              String userIn = in.readLine();
+              if(esql.verifyNumber(userIn) == false)   {
+                  throw new Exception("Error! A customerID cannot contain letters or special characters");
+              }
+              int id = toKey(userIn);
+              for (CustomerNames.Match m : matches)   {
+                  if(m.customerID == id)   {
+                      return id;
+                  }
+              }
+              throw new Exception(String.format("Error! %s is not one of the listed customers", userIn));
+          }
+          catch (Exception e)    {
+              System.out.println(e.getMessage());
+              continue;
+          }
+      }while(true);
+   }//end readCustomer
+
+   public static void topKHighestPriceBookingsForACustomer(DBProject esql){
+	  // Given a customer Name, List Top K highest booking price for a customer 
+      // Your code goes here.
+      try {
+          String userIn = "";
+          Integer customerID = readCustomer(esql);
+          if(customerID == null)   {
+            return;
+          }
 
         /*Here we ask for a value to indicate the number of rows we wish to see for the results. We verify that input is not:
          * Empty
@@ -1585,8 +2081,13 @@ public class DBProject {
               }
           }while(true);
 
-          String query = String.format("SELECT c.fName, c.lName, b.price, b.bookingDate, b.hotelID FROM Customer c, Booking b WHERE c.customerID = b.customer and c.fName = '%s' and c.lName = '%s' ORDER BY b.price DESC;", fName, lName);
-          esql.executeQueryLimit(query, Integer.parseInt(userIn));
+          final int k = Integer.parseInt(userIn);
+          final Integer customer = customerID;
+          if(BookingColumnStore.ENABLED)   {
+              Jobs.submit("topKHighestPriceBookingsForACustomer", () -> esql.bookingColumns().printTopCustomerBookings(customer, k));
+              return;
+          }
+          Jobs.submit("topKHighestPriceBookingsForACustomer", () -> esql.executeQueryLimit(TOP_K_CUSTOMER_BOOKINGS, k, customer));
       }
       catch(Exception e)   {
         System.out.println(e.getMessage());
@@ -1597,77 +2098,11 @@ public class DBProject {
 	  // Given a hotelID, customer Name and date range get the total cost incurred by the customer
       // Your code goes here.
       try {
-          String hotelID = "", fName = "", lName = "", startDate = "", endDate = "", errorCheck = "";
-          int errorResult = 0, textResult = 0;
-
-        /*Here we ask for first name to be used. We verify that input is not:
-         * Empty
-         * Is a vaild first name from the Customer Table
-         * Is formated as a text value (does not include digits or special characters)
-         * Does not exceed the length of an entry for text in the request table (which is a char(30))*/
-          do   {
-              try   {
-                  System.out.println("Please enter a customer's first name");
-                  System.out.println("Or type cancel if you chose the wrong menu option");
-                  fName = in.readLine();
-                  String temp = fName.toLowerCase();
-                  if(temp.equals("cancel"))   {
-                    return;
-                  }
-                  if(esql.isEmpty(fName))   {
-                      throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
-                  }
-                  textResult = esql.verifyText(fName);
-                  if(textResult == 2)  {
-                      throw new Exception("The length of the customer's first name must not exceed 30 characters");
-                  }
-                  else if(textResult == 1)   {
-                      throw new Exception("Error! A customer's first name must not include digits or special characters");
-                  }
-                  errorCheck = String.format("SELECT c.fName FROM Customer c WHERE c.fName = '%s'", fName);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
-                      throw new Exception(String.format("Error! The customer with first name of %s does not exist in the table of customer", fName));
-                  }
-                  break;
-              }
-              catch (Exception e)    {
-                  System.out.println(e.getMessage());
-                  continue;
-              }
-          }while(true);
-          
-        /*Here we ask for last name to be used. We verify that input is not:
-         * Empty
-         * Is a vaild last name from the Customer Table
-         * Is formated as a text value (does not include digits or special characters)
-         * Does not exceed the length of an entry for text in the request table (which is a char(30))*/
-          do   {
-              try   {
-                  System.out.println("Please enter a customer's last name");
-                  lName = in.readLine();
-                  if(esql.isEmpty(lName))   {
-                      throw new Exception("Error! Empty input detected. Please enter input before hitting enter");
-                  }
-                  textResult = esql.verifyText(lName);
-                  if(textResult == 2)  {
-                      throw new Exception("The length of the customer's last name must not exceed 30 characters");
-                  }
-                  else if(textResult == 1)   {
-                      throw new Exception("Error! A customer's last name must not include digits or special characters");
-                  }
-                  errorCheck = String.format("SELECT c.lName FROM Customer c WHERE c.lName = '%s'", lName);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
-                      throw new Exception(String.format("Error! The customer with last name of %s does not exist in the table of customer", lName));
-                  }
-                  break;
-              }
-              catch (Exception e)    {
-                  System.out.println(e.getMessage());
-                  continue;
-              }
-          }while(true);
+          String hotelID = "", startDate = "", endDate = "";
+          Integer customerID = readCustomer(esql);
+          if(customerID == null)   {
+            return;
+          }
 
         /*Here we ask for the Hotel hotelID to be used. We verify that input is not:
          * Empty
@@ -1683,9 +2118,7 @@ public class DBProject {
                   if(esql.verifyNumber(hotelID) == false)   {
                       throw new Exception(String.format("Error a hotelID number must not contain special characters or letters"));
                   } 
-                  errorCheck = String.format("SELECT h.hotelID FROM Hotel h WHERE h.hotelID = %s", hotelID);
-                  errorResult = esql.errorChecker(errorCheck);
-                  if(errorResult == 0)   {
+                  if(!esql.references().hotel(toKey(hotelID)))   {
                       throw new Exception(String.format("Error! %s is not a vaild hotelID", hotelID));
                   }
                   break;
@@ -1739,8 +2172,13 @@ public class DBProject {
               }
           }while(true);
 
-          String query = String.format("SELECT c.fName, c.lName, SUM(b.price) FROM Customer c, Booking b WHERE c.customerID = b.customer and b.hotelID = %s and  c.fName = '%s' and c.lName = '%s' and (b.bookingDate BETWEEN '%s'::date and '%s'::date) GROUP BY c.fName, c.lName;", hotelID, fName, lName, startDate, endDate);
-          esql.executeQuery(query);
+          final int hotel = toKey(hotelID), customer = customerID;
+          final int from = toDay(startDate), to = toDay(endDate);
+          if(BookingColumnStore.ENABLED)   {
+              Jobs.submit("totalCostForCustomer", () -> esql.bookingColumns().printTotalCost(hotel, customer, from, to));
+              return;
+          }
+          Jobs.submit("totalCostForCustomer", () -> Rollups.printTotalCost(esql, hotel, customer, from, to));
 
       }
       catch(Exception e)   {
@@ -1765,13 +2203,8 @@ public class DBProject {
 			continue;
 		  }
 	  }while(true);
-	  try {
-		esql.executeQuery("SELECT r.rID, r.repairType, r.hotelID, r.roomNo FROM Repair r, MaintenanceCompany m WHERE m.cmpID = r.mCompany AND m.name = \'" + input + "\';");
-		//System.out.println("SELECT r.rID, r.repairType, r.hotelID, r.roomNo FROM Repair r, MaintenanceCompany m WHERE m.cmpID = r.mCompany AND m.name = \'" + input + "\';");
-		}
-		catch (Exception e) {
-			System.out.println(e.getMessage());
-		}
+	  final String company = input;
+	  Jobs.submit("listRepairsMade", () -> esql.executeQuery(COMPANY_REPAIRS, company));
    }//end listRepairsMade
    
    public static void topKMaintenanceCompany(DBProject esql){
@@ -1795,26 +2228,33 @@ public class DBProject {
 		  }
 	  }while(true);
 	
-	  try {
-		esql.executeQuery("SELECT m.name, COUNT(DISTINCT r.rID) FROM Repair r, MaintenanceCompany m, WHERE r.mCompany = m.cmpID GROUP BY m.cmpID ORDER BY COUNT(DISTINCT r.rID) DESC LIMIT " + Integer.toString(input) + ";");
-	}
-	catch (Exception e) {
-		System.out.println("Error executing top K Maintenance Company query: " + e.getMessage());
-	}
+	  final int k = input;
+	  Jobs.submit("topKMaintenanceCompany", () -> {
+		try {
+			esql.executeQueryLimit(TOP_K_COMPANIES, k);
+		}
+		catch (SQLException e) {
+			System.out.println("Error executing top K Maintenance Company query: " + e.getMessage());
+		}
+	  });
    }//end topKMaintenanceCompany
    
    public static void numberOfRepairsForEachRoomPerYear(DBProject esql){
-	  // Given a hotelID, roomNo, get the count of repairs per year
-	  String inHotel;
+	  // Given a hotelID, roomNo, get the count of repairs per year.
+	  // The room can be left empty to get every room of the hotel, and ALL can be given instead of a hotel to get every hotel.
+	  Integer inHotel = null;
 	  do {
 		  try {
-			  System.out.print("Enter hotel id or type \'CANCEL\' to return to main menu: ");
-			  inHotel = in.readLine();
-			  if(inHotel.equals("CANCEL")) {
+			  System.out.print("Enter hotel id, ALL for every hotel, or type \'CANCEL\' to return to main menu: ");
+			  String line = in.readLine();
+			  if(line.equals("CANCEL")) {
 				return;
 			  }
-			  int checkHotel = esql.errorChecker("SELECT * FROM Hotel h WHERE h.hotelID = " + inHotel + ";");
-			  if(checkHotel < 1) {
+			  if(line.equalsIgnoreCase("ALL")) {
+				break;
+			  }
+			  inHotel = toKey(line);
+			  if(!esql.references().hotel(inHotel)) {
 				System.out.println("Error: Hotel not found");
 				continue;
 			  }
@@ -1825,13 +2265,16 @@ public class DBProject {
 			continue;
 		  }
 	  }while(true);
-	  int roomNum;
-	  do {
+	  Integer roomNum = null;
+	  while(inHotel != null) {
 		  try {
-			  System.out.print("Enter room number: ");
-			  roomNum = Integer.parseInt(in.readLine());
-			  int checkRoom = esql.errorChecker("SELECT * FROM Room R WHERE R.hotelID = \'" + inHotel + "\'" + " AND R.roomNo = \'" + Integer.toString(roomNum) + "\';");
-			  if(checkRoom < 1) {
+			  System.out.print("Enter room number, or leave it empty for every room of the hotel: ");
+			  String line = in.readLine();
+			  if(esql.isEmpty(line.trim())) {
+				break;
+			  }
+			  roomNum = toKey(line);
+			  if(!esql.references().room(inHotel, roomNum)) {
 				System.out.println("Error: Room not found in given Hotel");
 				continue;
 			  }			  
@@ -1841,62 +2284,64 @@ public class DBProject {
 			System.out.println(e.getMessage());
 			continue;
 		  }
-	  }while(true);
+	  }//end while
 	  
+	  final Integer hotel = inHotel, room = roomNum;
+	  Jobs.submit("numberOfRepairsForEachRoomPerYear", () -> {
 	  try {
-		  ResultSet data = esql.internalQuery("SELECT r.repairDate FROM Repair r WHERE r.hotelID = \'" + inHotel + "\'" + "AND r.roomNo = \'" + Integer.toString(roomNum) + "\';");
-		  //System.out.println("SELECT rp.repairDate FROM Repair rp WHERE rp.hotelID = \'" + inHotel + "\'" + " AND rp.roomNo = \'" + Integer.toString(roomNum) + "\';");
-		  HashMap<Integer, Integer> map = new HashMap<>();
-		  int year;
-		  LocalDate repDate;
-		  while(data.next()) { //get dates and hashmap them by year
-			  
-			  repDate = data.getDate("repairDate").toLocalDate();
-			  year = repDate.getYear();
-			  //System.out.println("Year: " + Integer.toString(year));
-			  
-			  if(map.get(year) != null) { //if year is already in map, increment the count
-					int old = map.get(year);
-					old += 1;
-					map.put(year, old);
-			  }
-			  else { //else add it to the map
-				  map.put(year, 1);
+		  // the years are bucketed by the server, the client only adds up the per room counts for the totals
+		  YearHistogram totals = new YearHistogram();
+		  RowFormatter out = RowFormatter.get();
+		  RowHandler bucket = data -> {
+			  int year = data.getInt(3);
+			  int repairs = data.getInt(4);
+			  totals.add(year, repairs);
+			  try {
+				  out.cell(data.getString(1));
+				  out.cell(data.getString(2));
+				  out.cell(Integer.toString(year));
+				  out.cell(Integer.toString(repairs));
+				  out.endRow();
+			  }catch (IOException e) {
+				  throw new SQLException("Error writing results: " + e.getMessage());
 			  }
-			  
-		  }//end while(data.next())
-		  //System.out.println(map);	
-		  map.forEach((key,value) -> System.out.println("Year: " + key + " Repair Count: " + value + "\n"));
+		  };
+		  out.cell("hotelID"); out.cell("roomNo"); out.cell("year"); out.cell("repairs"); out.endRow();
+		  if(room != null) {
+			  esql.forEachRow(ROOM_REPAIRS_PER_YEAR, bucket, hotel, room);
+		  }
+		  else if(hotel != null) {
+			  esql.forEachRow(HOTEL_REPAIRS_PER_YEAR, bucket, hotel);
+		  }
+		  else {
+			  esql.forEachRow(ALL_REPAIRS_PER_YEAR, bucket);
+		  }
+		  out.flush();
+		  System.out.println("Repairs per year over the selected rooms:");
+		  totals.print("Repair Count");
+		  System.out.println("Total repairs: " + totals.total());
 	  }
 	  catch (Exception e) {
 		  System.out.print("Error searching for repairs by year: " + e.getMessage());
 	  }//end try/catch
+	  });
 		  
 	  
-   }//end listRepairsMade
+   }//end numberOfRepairsForEachRoomPerYear
 
 
-    public static String formatValues(ArrayList<String> data) { //Helper function to format data into VALUES (x,y,z)
-      String result = "VALUES (";
-      for(int i = 0; i < data.size(); i++) {
-	result += "\'";
-        result += data.get(i);
-        result += "\', ";
-      }
-	result = result.substring(0,result.length()-2);
-      result += ")";
-      return result;
-    }
-
-    public ResultSet internalQuery(String query) throws SQLException { //Helper function to query for something without printing it.
-
-       // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-		
-		return rs;
+    public int forEachRow(String query, RowHandler handler, Object... params) throws SQLException { //Helper function to query for something without printing it.
+      // streams the rows of the query and hands each one to the handler
+      return streamQuery ("forEachRow", query, 0, rs -> {
+         int rowCount = 0;
+         while (rs.next()) {
+            Jobs.checkCancelled ();
+            handler.row (rs);
+            ++rowCount;
+         }
+         rs.close ();
+         return rowCount;
+      }, params);
     }
 
 }//end DBProject
@@ -0,0 +1,399 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class writes the nine data/*.csv feeds at a chosen scale, in the
+ * layout the \COPY commands of sql/create.sql and the load mode read.
+ *
+ * Scale 1 gives the sizes of the bundled files: 1,000 hotels of 10 rooms and
+ * 5 staff each, 2,000 customers, 20 maintenance companies, 4,000 bookings and
+ * 2,000 repairs, requests and assignments.  Every count grows linearly with
+ * the scale (companies with its square root) and can be set on its own with
+ * -Ddatagen.<table>=rows, e.g. -Ddatagen.bookings=20000000.
+ *
+ * Bookings and repairs pick their hotel from a Zipf distribution, so a few
+ * hotels are much busier than the rest, and booking dates follow a summer and
+ * year end season.  Rows are written as they are drawn, nothing but the
+ * counts is kept in memory.  The same scale and seed always give the same
+ * files; every file has its own random stream, so they are written in
+ * parallel.
+ *
+ * Usage: java DataGenerator <outDir> [scale [seed]]
+ */
+public class DataGenerator {
+
+   // the staff of every hotel, in SSN order; the first is the manager
+   static final String[] STAFF_ROLES = {"Manager", "Receptionist", "HouseCleaning", "Receptionist", "HouseCleaning"};
+   // the room type of every room number, repeating every 10 rooms
+   static final String[] ROOM_TYPES = {"Suite", "Economy", "Deluxe", "Economy", "Suite", "Economy", "Deluxe", "Economy", "Suite", "Economy"};
+   static final String[] REPAIR_TYPES = {"Small", "Medium", "Large"};
+   static final String[] GENDERS = {"Male", "Female", "Other"};
+
+   // Zipf exponent of the hotel popularity, 0 is uniform
+   static final double SKEW = Double.parseDouble(System.getProperty("datagen.skew", "1.0"));
+   static final int FIRST_YEAR = Integer.getInteger("datagen.firstYear", 2000);
+   static final int LAST_YEAR = Integer.getInteger("datagen.lastYear", 2018);
+   static final int ROOMS_PER_HOTEL = Integer.getInteger("datagen.roomsPerHotel", ROOM_TYPES.length);
+
+   final File dir;
+   final long seed;
+   final int hotels, customers, companies, bookings, repairs, requests, assigned;
+
+   public DataGenerator (File dir, double scale, long seed) {
+      this.dir = dir;
+      this.seed = seed;
+      this.hotels = count("hotels", 1000 * scale);
+      this.customers = count("customers", 2000 * scale);
+      this.companies = count("companies", 20 * Math.sqrt(scale));
+      this.bookings = count("bookings", 4000 * scale);
+      this.repairs = count("repairs", 2000 * scale);
+      this.requests = Math.min(count("requests", 2000 * scale), this.repairs);
+      this.assigned = count("assigned", 2000 * scale);
+   }//end DataGenerator
+
+   private static int count (String table, double scaled) {
+      long rows = Long.getLong("datagen." + table, Math.max(1L, Math.round(scaled)));
+      if (rows > Integer.MAX_VALUE)
+         throw new IllegalArgumentException("Too many " + table + ": " + rows);
+      return (int) rows;
+   }
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 1) {
+         System.err.println("Usage: java [-Ddatagen.<table>=rows -Ddatagen.skew=1.0] "
+               + DataGenerator.class.getName() + " <outDir> [scale [seed]]");
+         return;
+      }//end if
+      File dir = new File(args[0]);
+      if (!dir.isDirectory() && !dir.mkdirs())
+         throw new IOException("Cannot create " + dir);
+      double scale = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+      long seed = args.length > 2 ? Long.parseLong(args[2]) : 166L;
+      new DataGenerator(dir, scale, seed).run();
+   }//end main
+
+   /**
+    * Writes every feed into the output directory, replacing files of the
+    * same name.
+    */
+   public void run () throws Exception {
+      long start = System.currentTimeMillis();
+      ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+      List<Future<Void>> running = new ArrayList<Future<Void>>();
+      running.add(workers.submit(() -> { hotels(); return null; }));
+      running.add(workers.submit(() -> { staff(); return null; }));
+      running.add(workers.submit(() -> { rooms(); return null; }));
+      running.add(workers.submit(() -> { customers(); return null; }));
+      running.add(workers.submit(() -> { companies(); return null; }));
+      running.add(workers.submit(() -> { bookings(); return null; }));
+      running.add(workers.submit(() -> { repairsAndRequests(); return null; }));
+      running.add(workers.submit(() -> { assigned(); return null; }));
+      try {
+         for (Future<Void> f : running)
+            f.get();
+      }finally{
+         workers.shutdown();
+      }//end try
+      System.out.println(String.format("Wrote %d hotels, %d customers, %d companies, %d bookings, %d repairs, %d requests, %d assignments to %s in %.1fs",
+            this.hotels, this.customers, this.companies, this.bookings, this.repairs, this.requests, this.assigned,
+            this.dir, (System.currentTimeMillis() - start) / 1000.0));
+   }//end run
+
+   /* Each file draws from its own stream so the output does not depend on the thread timing */
+   private SplittableRandom random (int file) {
+      return new SplittableRandom(this.seed * 31 + file);
+   }
+
+   private Row open (String file) throws IOException {
+      return new Row(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(this.dir, file)), StandardCharsets.US_ASCII), 1 << 20));
+   }
+
+   void hotels () throws IOException {
+      SplittableRandom rnd = random(0);
+      try (Row out = open("hotel.csv")) {
+         out.add(0).add("default").add("\\N").end();
+         // the manager is filled in from Staff after loading, see create.sql
+         for (int h = 1; h <= this.hotels; ++h)
+            out.add(h).word(rnd, 6).add("\\N").end();
+      }//end try
+   }//end hotels
+
+   void staff () throws IOException {
+      SplittableRandom rnd = random(1);
+      try (Row out = open("staff.csv")) {
+         out.add(0).add("default").add("default").add("default").add("Manager").add(0).end();
+         long ssn = 0;
+         for (int h = 1; h <= this.hotels; ++h) {
+            for (String role : STAFF_ROLES)
+               out.add(++ssn).word(rnd, 4).word(rnd, 4).word(rnd, 6).add(role).add(h).end();
+         }//end for
+      }//end try
+   }//end staff
+
+   void rooms () throws IOException {
+      try (Row out = open("room.csv")) {
+         out.add(0).add(0).add("default").end();
+         for (int h = 1; h <= this.hotels; ++h) {
+            for (int r = 1; r <= ROOMS_PER_HOTEL; ++r)
+               out.add(h).add(r).add(roomType(r)).end();
+         }//end for
+      }//end try
+   }//end rooms
+
+   void customers () throws IOException {
+      SplittableRandom rnd = random(3);
+      try (Row out = open("customer.csv")) {
+         out.add(0).add("default").add("default").add("default").add(0).date(DateCodec.of(2000, 1, 1)).add("Male").end();
+         int firstDob = DateCodec.of(1940, 1, 1);
+         int lastDob = DateCodec.of(2000, 12, 31);
+         for (int c = 1; c <= this.customers; ++c) {
+            out.add(c).word(rnd, 4).word(rnd, 4).word(rnd, 6).add(rnd.nextLong(1000000000L, 10000000000L))
+               .date(rnd.nextInt(firstDob, lastDob + 1)).add(GENDERS[rnd.nextInt(GENDERS.length)]).end();
+         }//end for
+      }//end try
+   }//end customers
+
+   void companies () throws IOException {
+      SplittableRandom rnd = random(4);
+      try (Row out = open("maintenanceCompany.csv")) {
+         out.add(0).add("default").add("default").add("TRUE").end();
+         for (int m = 1; m <= this.companies; ++m)
+            out.add(m).word(rnd, 4).word(rnd, 6).add(rnd.nextInt(10) < 8 ? "TRUE" : "FALSE").end();
+      }//end try
+   }//end companies
+
+   void bookings () throws IOException {
+      SplittableRandom rnd = random(5);
+      Zipf hotel = new Zipf(this.hotels, SKEW);
+      try (Row out = open("booking.csv")) {
+         out.add(0).add(0).add(0).add(0).date(DateCodec.of(2000, 1, 1)).add(0).add(0).end();
+         for (int b = 1; b <= this.bookings; ++b) {
+            int h = hotel.next(rnd);
+            int r = 1 + rnd.nextInt(ROOMS_PER_HOTEL);
+            int day = bookingDay(rnd);
+            int people = 1 + rnd.nextInt(3);
+            // the room type sets the base rate, the season and the party size move it
+            double base = roomType(r).equals("Suite") ? 1400 : roomType(r).equals("Deluxe") ? 1000 : 600;
+            double price = base * season(day) * (0.9 + 0.1 * people) * (0.8 + 0.4 * rnd.nextDouble());
+            out.add(b).add(1 + rnd.nextInt(this.customers)).add(h).add(r).date(day).add(people).add(Math.min(9999, Math.round(price))).end();
+         }//end for
+      }//end try
+   }//end bookings
+
+   /* Request i is raised by the manager of the hotel of repair i, so both files are written together */
+   void repairsAndRequests () throws IOException {
+      SplittableRandom rnd = random(6);
+      Zipf hotel = new Zipf(this.hotels, SKEW);
+      int first = DateCodec.of(FIRST_YEAR, 1, 1);
+      int last = DateCodec.of(LAST_YEAR, 12, 31);
+      try (Row repair = open("repair.csv"); Row request = open("request.csv")) {
+         repair.add(0).add(0).add(0).add(0).date(DateCodec.of(2000, 1, 1)).add("default").add("Small").end();
+         request.add(0).add(0).add(0).date(DateCodec.of(2000, 1, 1)).add("default").end();
+         for (int i = 1; i <= this.repairs; ++i) {
+            int h = hotel.next(rnd);
+            int day = rnd.nextInt(first, last + 1);
+            repair.add(i).add(h).add(1 + rnd.nextInt(ROOMS_PER_HOTEL)).add(1 + rnd.nextInt(this.companies))
+                  .date(day).word(rnd, 4).add(REPAIR_TYPES[rnd.nextInt(REPAIR_TYPES.length)]).end();
+            if (i <= this.requests)
+               request.add(i).add(manager(h)).add(i).date(day + rnd.nextInt(60)).word(rnd, 4).end();
+         }//end for
+      }//end try
+   }//end repairsAndRequests
+
+   void assigned () throws IOException {
+      SplittableRandom rnd = random(8);
+      try (Row out = open("assigned.csv")) {
+         out.add(0).add(0).add(0).add(0).end();
+         for (int a = 1; a <= this.assigned; ++a) {
+            int h = 1 + rnd.nextInt(this.hotels);
+            // one of the two house cleaners of the hotel
+            long staff = manager(h) + (rnd.nextBoolean() ? 2 : 4);
+            out.add(a).add(staff).add(h).add(1 + rnd.nextInt(ROOMS_PER_HOTEL)).end();
+         }//end for
+      }//end try
+   }//end assigned
+
+   static String roomType (int roomNo) {
+      return ROOM_TYPES[(roomNo - 1) % ROOM_TYPES.length];
+   }
+
+   static long manager (int hotelID) {
+      return (long) (hotelID - 1) * STAFF_ROLES.length + 1;
+   }
+
+   /* Demand relative to the yearly average: a summer peak, a year end peak and busier weekends */
+   static double season (int day) {
+      int d = day - DateCodec.of(DateCodec.year(day), 1, 1) + 1;
+      double w = 1.0 + 0.5 * Math.cos(2 * Math.PI * (d - 196) / 365.0);
+      if (d >= 355 || d <= 3)
+         w += 0.8;
+      int dow = DateCodec.dayOfWeek(day);
+      if (dow == 5 || dow == 6)
+         w *= 1.3;
+      return w;
+   }//end season
+
+   /* A booking day drawn by the season, with later years busier than earlier ones */
+   static int bookingDay (SplittableRandom rnd) {
+      int years = LAST_YEAR - FIRST_YEAR + 1;
+      int first = DateCodec.of(FIRST_YEAR, 1, 1);
+      int span = DateCodec.of(LAST_YEAR, 12, 31) - first + 1;
+      // 3.12 is the highest value season can return
+      while (true) {
+         int day = first + rnd.nextInt(span);
+         double growth = (1.0 + DateCodec.year(day) - FIRST_YEAR) / years;
+         if (rnd.nextDouble() * 3.12 <= season(day) * growth)
+            return day;
+      }//end while
+   }//end bookingDay
+
+   /**
+    * Appends the fields of one csv line, writing through a large buffer.
+    */
+   static class Row implements AutoCloseable {
+      private final Writer out;
+      private final StringBuilder line = new StringBuilder(128);
+
+      Row (Writer out) {
+         this.out = out;
+      }
+
+      Row add (String value) {
+         if (this.line.length() > 0)
+            this.line.append(',');
+         this.line.append(value);
+         return this;
+      }
+
+      Row add (long value) {
+         if (this.line.length() > 0)
+            this.line.append(',');
+         this.line.append(value);
+         return this;
+      }
+
+      /* M/d/yyyy, the date layout of the bundled files */
+      Row date (int day) {
+         if (this.line.length() > 0)
+            this.line.append(',');
+         DateCodec.append(this.line, day);
+         return this;
+      }
+
+      /* A random lower case word, like the names and addresses of the bundled files */
+      Row word (SplittableRandom rnd, int length) {
+         if (this.line.length() > 0)
+            this.line.append(',');
+         for (int i = 0; i < length; ++i)
+            this.line.append((char) ('a' + rnd.nextInt(26)));
+         return this;
+      }
+
+      void end () throws IOException {
+         this.line.append('\n');
+         this.out.append(this.line);
+         this.line.setLength(0);
+      }
+
+      @Override
+      public void close () throws IOException {
+         this.out.close();
+      }
+   }//end Row
+
+   /**
+    * Draws 1..n with probability proportional to 1 / rank^s by rejection
+    * inversion (Hormann and Derflinger), in constant time and memory.  Ranks
+    * are spread over the hotel IDs so the busiest hotels are not all at the
+    * start of the table.
+    */
+   static class Zipf {
+      private final int n;
+      private final double s;
+      private final double hIntegralX1;
+      private final double hIntegralN;
+      private final double threshold;
+      private final long stride;
+
+      Zipf (int n, double s) {
+         this.n = n;
+         this.s = s;
+         this.hIntegralX1 = hIntegral(1.5) - 1.0;
+         this.hIntegralN = hIntegral(n + 0.5);
+         this.threshold = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2.0));
+         long stride = 2654435761L % n;
+         while (n > 1 && gcd(stride, n) != 1)
+            ++stride;
+         this.stride = Math.max(1, stride);
+      }
+
+      int next (SplittableRandom rnd) {
+         while (true) {
+            double u = this.hIntegralN + rnd.nextDouble() * (this.hIntegralX1 - this.hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1)
+               k = 1;
+            else if (k > this.n)
+               k = this.n;
+            if (k - x <= this.threshold || u >= hIntegral(k + 0.5) - h(k))
+               return 1 + (int) ((k - 1) * this.stride % this.n);
+         }//end while
+      }
+
+      private double h (double x) {
+         return Math.exp(-this.s * Math.log(x));
+      }
+
+      private double hIntegral (double x) {
+         double logX = Math.log(x);
+         return helper2((1.0 - this.s) * logX) * logX;
+      }
+
+      private double hIntegralInverse (double x) {
+         double t = x * (1.0 - this.s);
+         if (t < -1.0)
+            t = -1.0;
+         return Math.exp(helper1(t) * x);
+      }
+
+      /* log(1 + x) / x, accurate near 0 */
+      private static double helper1 (double x) {
+         return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+      }
+
+      /* (exp(x) - 1) / x, accurate near 0 */
+      private static double helper2 (double x) {
+         return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
+      }
+
+      private static long gcd (long a, long b) {
+         return b == 0 ? a : gcd(b, a % b);
+      }
+   }//end Zipf
+
+}//end DataGenerator
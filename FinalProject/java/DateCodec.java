@@ -0,0 +1,204 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.text.ParseException;
+
+/**
+ * This class handles every date of the program as an int: the number of days
+ * since 1970-01-01, the same as LocalDate.toEpochDay.  Dates typed by the
+ * user, read from batch files and CSV files are parsed from MM/dd/yyyy
+ * straight into that number, without a DateFormat or any object.
+ *
+ * A day is sent to the server as an integer and turned into a date there:
+ * SQL takes it through a PARAM placeholder, and reads a Date column back as a
+ * day with column.  The same numbers key the in-memory indexes, see
+ * AvailabilityIndex.
+ */
+public class DateCodec {
+
+   static final String EPOCH = "DATE '1970-01-01'";
+
+   // a date placeholder, bound to a day
+   static final String PARAM = "(" + EPOCH + " + ?)";
+
+   // returned by parse when the text is not a valid date
+   public static final int INVALID = Integer.MIN_VALUE;
+
+   /**
+    * @return the SQL reading a Date column, or any date expression, as a day
+    */
+   static String column (String date) {
+      return "(" + date + " - " + EPOCH + ")";
+   }//end column
+
+   /**
+    * Parses a MM/dd/yyyy date.  Month and day may have one or two digits, the
+    * year must have four; blanks around the date are ignored.
+    *
+    * @return the day, or INVALID
+    */
+   public static int parse (CharSequence text) {
+      return parse(text, 0, text.length());
+   }//end parse
+
+   /**
+    * Parses the MM/dd/yyyy date in text from the index from up to the index to.
+    *
+    * @return the day, or INVALID
+    */
+   public static int parse (CharSequence text, int from, int to) {
+      while (from < to && text.charAt(from) <= ' ')
+         ++from;
+      while (to > from && text.charAt(to - 1) <= ' ')
+         --to;
+      int field = 0, value = 0, digits = 0, month = 0, day = 0;
+      for (int i = from; i < to; ++i) {
+         char c = text.charAt(i);
+         if (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (++digits > (field == 2 ? 4 : 2))
+               return INVALID;
+         }else if (c == '/' && field < 2 && digits > 0) {
+            if (field == 0)
+               month = value;
+            else
+               day = value;
+            ++field;
+            value = 0;
+            digits = 0;
+         }else {
+            return INVALID;
+         }//end if
+      }//end for
+      if (field != 2 || digits != 4)
+         return INVALID;
+      return of(value, month, day);
+   }//end parse
+
+   /**
+    * Parses a MM/dd/yyyy date.
+    *
+    * @return the day
+    * @throws java.text.ParseException when the text is not a valid date
+    */
+   public static int parseOrThrow (String text) throws ParseException {
+      int day = parse(text);
+      if (day == INVALID)
+         throw new ParseException("Error! " + text.trim() + " is not a valid date, the format should follow month/day/year", 0);
+      return day;
+   }//end parseOrThrow
+
+   /**
+    * @return the day of the date, or INVALID when there is no such date
+    */
+   public static int of (int year, int month, int day) {
+      if (year < 1 || year > 9999 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month))
+         return INVALID;
+      // counted from 0000-03-01 so the leap day ends the year, see days_from_civil by Howard Hinnant
+      int y = month <= 2 ? year - 1 : year;
+      int era = y / 400, yoe = y - era * 400;
+      int doy = (153 * ((month + 9) % 12) + 2) / 5 + day - 1;
+      int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+      return era * 146097 + doe - 719468;
+   }//end of
+
+   private static int lengthOfMonth (int year, int month) {
+      if (month == 2)
+         return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+      return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+   }//end lengthOfMonth
+
+   /**
+    * @return the date of the day as the number yyyymmdd
+    */
+   public static int yyyymmdd (int epochDay) {
+      int z = epochDay + 719468;
+      int era = (z >= 0 ? z : z - 146096) / 146097;
+      int doe = z - era * 146097;
+      int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+      int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+      int mp = (5 * doy + 2) / 153;
+      int day = doy - (153 * mp + 2) / 5 + 1;
+      int month = mp < 10 ? mp + 3 : mp - 9;
+      int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+      return year * 10000 + month * 100 + day;
+   }//end yyyymmdd
+
+   public static int year (int epochDay) {
+      return yyyymmdd(epochDay) / 10000;
+   }//end year
+
+   public static int month (int epochDay) {
+      return yyyymmdd(epochDay) / 100 % 100;
+   }//end month
+
+   public static int dayOfMonth (int epochDay) {
+      return yyyymmdd(epochDay) % 100;
+   }//end dayOfMonth
+
+   /**
+    * @return the day of the week, 1 for Monday to 7 for Sunday
+    */
+   public static int dayOfWeek (int epochDay) {
+      // 1970-01-01 was a Thursday
+      return Math.floorMod(epochDay + 3, 7) + 1;
+   }//end dayOfWeek
+
+   /**
+    * @return the Monday of the week holding the day
+    */
+   public static int monday (int epochDay) {
+      return epochDay - dayOfWeek(epochDay) + 1;
+   }//end monday
+
+   /**
+    * @return the first day of the month holding the day
+    */
+   public static int firstOfMonth (int epochDay) {
+      return epochDay - dayOfMonth(epochDay) + 1;
+   }//end firstOfMonth
+
+   /**
+    * @return the first day of the month after the one holding the day
+    */
+   public static int firstOfNextMonth (int epochDay) {
+      int date = yyyymmdd(epochDay), month = date / 100 % 100;
+      return month == 12 ? of(date / 10000 + 1, 1, 1) : of(date / 10000, month + 1, 1);
+   }//end firstOfNextMonth
+
+   /**
+    * Appends the day as M/d/yyyy, the layout of the bundled CSV files.
+    */
+   public static StringBuilder append (StringBuilder out, int epochDay) {
+      int date = yyyymmdd(epochDay);
+      return out.append(date / 100 % 100).append('/').append(date % 100).append('/').append(date / 10000);
+   }//end append
+
+   /**
+    * Appends the day as yyyy-mm-dd, which the server reads whatever its DateStyle.
+    */
+   public static StringBuilder appendIso (StringBuilder out, int epochDay) {
+      int date = yyyymmdd(epochDay), month = date / 100 % 100, day = date % 100;
+      out.append(date / 10000).append(month < 10 ? "-0" : "-").append(month);
+      return out.append(day < 10 ? "-0" : "-").append(day);
+   }//end appendIso
+
+   /**
+    * @return the day as MM/dd/yyyy
+    */
+   public static String format (int epochDay) {
+      int date = yyyymmdd(epochDay);
+      return String.format("%02d/%02d/%04d", date / 100 % 100, date % 100, date / 10000);
+   }//end format
+
+}//end DateCodec
@@ -0,0 +1,139 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class is a compressed set of day numbers (days since 1970-01-01).
+ * While the set is small it is a sorted int array; once it grows past
+ * ARRAY_LIMIT days it switches to a plain bitmap of 64 bit words covering only
+ * the span between its first and last day.  Most rooms have few bookings, so
+ * most sets stay in the small array form.
+ */
+public class DayBitmap {
+
+   // number of days kept as a sorted array before switching to a bitmap
+   static final int ARRAY_LIMIT = 64;
+
+   // array form
+   private int[] days = new int[4];
+   private int size = 0;
+
+   // bitmap form: bit (day - base) of words is set for every day in the set, base is a multiple of 64
+   private long[] words = null;
+   private int base = 0;
+
+   /**
+    * Adds the day to the set.
+    */
+   public void add (int day) {
+      if (this.words != null) {
+         set(day);
+         return;
+      }//end if
+      int i = search(day);
+      if (i >= 0)
+         return;
+      i = -i - 1;
+      if (this.size == ARRAY_LIMIT) {
+         toBitmap();
+         set(day);
+         return;
+      }//end if
+      if (this.size == this.days.length) {
+         int[] grown = new int[this.days.length * 2];
+         System.arraycopy(this.days, 0, grown, 0, this.size);
+         this.days = grown;
+      }//end if
+      System.arraycopy(this.days, i, this.days, i + 1, this.size - i);
+      this.days[i] = day;
+      ++this.size;
+   }//end add
+
+   /**
+    * @return true when the day is in the set
+    */
+   public boolean contains (int day) {
+      if (this.words == null)
+         return search(day) >= 0;
+      int bit = day - this.base;
+      return bit >= 0 && (bit >> 6) < this.words.length && (this.words[bit >> 6] & (1L << bit)) != 0;
+   }//end contains
+
+   /**
+    * @return true when any day from first to last, both included, is in the set
+    */
+   public boolean intersects (int first, int last) {
+      if (first > last)
+         return false;
+      if (this.words == null) {
+         int i = search(first);
+         if (i >= 0)
+            return true;
+         i = -i - 1;
+         return i < this.size && this.days[i] <= last;
+      }//end if
+      int lo = Math.max(first - this.base, 0);
+      int hi = Math.min(last - this.base, this.words.length * 64 - 1);
+      if (lo > hi)
+         return false;
+      int w = lo >> 6;
+      int lastWord = hi >> 6;
+      long mask = -1L << lo;
+      for (; w < lastWord; ++w, mask = -1L) {
+         if ((this.words[w] & mask) != 0)
+            return true;
+      }//end for
+      mask &= -1L >>> (63 - (hi & 63));
+      return (this.words[w] & mask) != 0;
+   }//end intersects
+
+   private int search (int day) {
+      int lo = 0, hi = this.size - 1;
+      while (lo <= hi) {
+         int mid = (lo + hi) >>> 1;
+         if (this.days[mid] < day)
+            lo = mid + 1;
+         else if (this.days[mid] > day)
+            hi = mid - 1;
+         else
+            return mid;
+      }//end while
+      return -(lo + 1);
+   }//end search
+
+   private void toBitmap () {
+      this.base = Math.floorDiv(this.days[0], 64) * 64;
+      this.words = new long[(this.days[this.size - 1] - this.base) / 64 + 1];
+      for (int i = 0; i < this.size; ++i)
+         set(this.days[i]);
+      this.days = null;
+      this.size = 0;
+   }//end toBitmap
+
+   private void set (int day) {
+      if (day < this.base) {
+         int newBase = Math.floorDiv(day, 64) * 64;
+         int shift = (this.base - newBase) / 64;
+         long[] grown = new long[this.words.length + shift];
+         System.arraycopy(this.words, 0, grown, shift, this.words.length);
+         this.words = grown;
+         this.base = newBase;
+      }else if ((day - this.base) / 64 >= this.words.length) {
+         long[] grown = new long[Math.max(this.words.length * 2, (day - this.base) / 64 + 1)];
+         System.arraycopy(this.words, 0, grown, 0, this.words.length);
+         this.words = grown;
+      }//end if
+      int bit = day - this.base;
+      this.words[bit >> 6] |= 1L << bit;
+   }//end set
+
+}//end DayBitmap
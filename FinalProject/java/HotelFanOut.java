@@ -0,0 +1,135 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class runs a per hotel report for every hotel at once.  The sorted
+ * hotel IDs are split into ranges of HOTELS_PER_PARTITION hotels, the ranges
+ * are run concurrently on a fork-join pool with one worker per pooled
+ * connection, and the rows of every range are written in hotel order as
+ * soon as the ranges before it are written, so the merged report is sorted
+ * by hotel as long as each range is.  At most AHEAD ranges are started
+ * before the oldest unwritten one, which bounds the rows held in memory.
+ *
+ * The ranges cover the whole key space, hotels added since the hotel IDs
+ * were read fall into the range next to them.
+ */
+public class HotelFanOut {
+
+   // hotels handled by one range
+   static final int HOTELS_PER_PARTITION = Integer.getInteger("dbproject.fanout.hotels", 64);
+
+   private static final ForkJoinPool POOL = new ForkJoinPool(DBProject.POOL_SIZE);
+   // ranges started and not yet written
+   private static final int AHEAD = 2 * DBProject.POOL_SIZE;
+
+   /**
+    * The report for one range of hotels.
+    */
+   public interface Partition {
+      /**
+       * Writes the rows of the hotels from firstHotel to lastHotel, both
+       * included, sorted by hotel.
+       *
+       * @param firstHotel the lowest hotelID of the range
+       * @param lastHotel the highest hotelID of the range
+       * @param hotels the known hotels of the range, sorted
+       * @param out where the rows go
+       */
+      void run (int firstHotel, int lastHotel, int[] hotels, RowFormatter out) throws Exception;
+   }//end Partition
+
+   /* The output of one range */
+   private static class Part {
+      final StringWriter text = new StringWriter();
+      long rows = 0;
+   }//end Part
+
+   /* Runs the range of hotels[from] to hotels[to - 1] for the job */
+   private static Part runRange (int[] hotels, int from, int to, Partition partition, Jobs.Job job) throws Exception {
+      // the first range starts at the smallest key and every range runs up to the next one
+      int first = from == 0 ? Integer.MIN_VALUE : hotels[from];
+      int last = to == hotels.length ? Integer.MAX_VALUE : hotels[to] - 1;
+      int[] known = new int[to - from];
+      System.arraycopy(hotels, from, known, 0, known.length);
+      return Jobs.callIn(job, () -> {
+         Part part = new Part();
+         RowFormatter out = new RowFormatter(part.text);
+         partition.run(first, last, known, out);
+         out.flush();
+         part.rows = out.rows();
+         return part;
+      });
+   }//end runRange
+
+   /**
+    * Runs the report for every hotel and writes the merged rows under one
+    * header line to the calling thread's RowFormatter.
+    *
+    * @param hotels every known hotelID, sorted
+    * @param header the column names
+    * @param partition the report for one range of hotels
+    * @return the number of rows written
+    * @throws java.sql.SQLException when the report of a range failed
+    */
+   public static long run (int[] hotels, String[] header, Partition partition) throws SQLException {
+      Jobs.Job job = Jobs.current();
+      ArrayDeque<ForkJoinTask<Part>> running = new ArrayDeque<ForkJoinTask<Part>>();
+      long rows = 0;
+      try {
+         RowFormatter out = RowFormatter.get();
+         for (String column : header)
+            out.cell(column);
+         out.endRow();
+         out.flush();
+         int next = 0;
+         while (next < hotels.length || !running.isEmpty()) {
+            while (next < hotels.length && running.size() < AHEAD) {
+               final int from = next, to = Math.min(hotels.length, next + HOTELS_PER_PARTITION);
+               running.add(POOL.submit(() -> runRange(hotels, from, to, partition, job)));
+               next = to;
+            }//end while
+            Part part = running.peek().get();
+            running.remove();
+            out.append(part.text.toString(), part.rows);
+            out.flush();
+            rows += part.rows;
+         }//end while
+      }catch (IOException e) {
+         throw new SQLException("Error writing results: " + e.getMessage());
+      }catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new SQLException("Interrupted");
+      }catch (ExecutionException e) {
+         // the pool may hand back a copy of the exception, the SQLException is further down the causes
+         for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException)
+               throw (SQLException) cause;
+         }//end for
+         throw new SQLException(e.getCause().getMessage());
+      }finally{
+         // after a failure the ranges not started yet are dropped, the running ones finish on their own
+         for (ForkJoinTask<Part> task : running)
+            task.cancel(false);
+      }//end try
+      return rows;
+   }//end run
+
+}//end HotelFanOut
@@ -0,0 +1,414 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class recommends indexes for the statements the menu operations send.
+ * Every SQL template of DBProject is EXPLAINed with values taken from the
+ * database, and the plans are checked for sequential scans.
+ *
+ * Candidate indexes are created inside a transaction that is rolled back,
+ * so the database is left as it was; while a candidate is being measured
+ * writers to its table wait.  Existing indexes that repeat a prefix of
+ * another index, or that no template plan uses, are reported as redundant.
+ * Whether a plan uses an index is measured by dropping it in a transaction
+ * that is rolled back, and DROP INDEX locks the table in ACCESS EXCLUSIVE
+ * mode, so readers of the table wait as well until the plans are costed.
+ *
+ * The result is written as a replacement for sql/index.sql, with the plan
+ * cost of each template before and after.  The redundant indexes are dropped
+ * there with DROP INDEX CONCURRENTLY, which waits for the running queries
+ * instead of blocking the table; psql runs it outside a transaction.
+ */
+public class IndexAdvisor {
+
+   // a candidate is recommended when it lowers the cost of some template by at least this fraction
+   static final double MIN_GAIN = 0.10;
+
+   // the tables of sql/create.sql, lower case as they are stored in the catalog
+   static final String[] TABLES = {"hotel", "staff", "room", "customer", "maintenancecompany", "booking", "repair", "request", "assigned"};
+
+   private static final Pattern COST = Pattern.compile("cost=[0-9.]+\\.\\.([0-9.]+)");
+   private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+   /**
+    * One statement of the workload and the menu operations that send it.
+    */
+   static class Template {
+      final String sql;
+      final Object[] params;
+      String operations;
+      double cost;
+      List<String> seqScans = new ArrayList<String>();
+
+      Template (String operations, String sql, Object[] params) {
+         this.operations = operations;
+         this.sql = sql;
+         this.params = params;
+      }
+
+      boolean reads (String table) {
+         return (" " + this.sql.toLowerCase() + " ").contains(" " + table + " ");
+      }
+   }//end Template
+
+   /**
+    * An index that exists in the database or that is being considered.
+    */
+   static class Index {
+      final String name;
+      final String table;
+      final String columns;
+      final String definition;
+      String reason;
+      final Map<Template, Double> gains = new LinkedHashMap<Template, Double>();
+
+      Index (String name, String table, String columns, String definition) {
+         this.name = name;
+         this.table = table;
+         this.columns = columns;
+         this.definition = definition;
+      }
+   }//end Index
+
+   // composite and foreign key indexes the menu predicates could use
+   static final Index[] CANDIDATES = {
+      candidate("booking_hotel_room_date_idx", "Booking", "hotelID, roomNo, bookingDate"),
+      candidate("booking_hotel_date_idx", "Booking", "hotelID, bookingDate"),
+      candidate("booking_date_idx", "Booking", "bookingDate"),
+      candidate("booking_customer_idx", "Booking", "customer"),
+      candidate("repair_hotel_room_idx", "Repair", "hotelID, roomNo"),
+      candidate("repair_company_idx", "Repair", "mCompany"),
+      candidate("staff_employer_role_idx", "Staff", "employerID, role"),
+      candidate("company_name_idx", "MaintenanceCompany", "name"),
+      candidate("request_repair_idx", "Request", "repairID"),
+      candidate("assigned_hotel_room_idx", "Assigned", "hotelID, roomNo"),
+   };
+
+   private static Index candidate (String name, String table, String columns) {
+      return new Index(name, table.toLowerCase(), columns.toLowerCase(),
+            "CREATE INDEX " + name + "\nON " + table + "\nUSING BTREE\n(" + columns + ")");
+   }
+
+   private final DBProject esql;
+   private final File output;
+   private Connection c;
+
+   public IndexAdvisor (DBProject esql, File output) {
+      this.esql = esql;
+      this.output = output;
+   }//end IndexAdvisor
+
+   /**
+    * Explains the workload, measures the candidates and writes the
+    * replacement index script.
+    *
+    * @return true when the script was written
+    */
+   public boolean run () throws SQLException, IOException {
+      Map<String, Template> workload = workload();
+      ConnectionPool.PooledConnection conn = this.esql.borrow();
+      this.c = conn.connection();
+      this.c.setAutoCommit(false);
+      try {
+         // plans as they are today
+         double before = 0;
+         for (Template t : workload.values()) {
+            explain(t);
+            before += t.cost;
+         }//end for
+         this.c.rollback();
+
+         System.out.println("Sequential scans:");
+         for (Template t : workload.values()) {
+            if (!t.seqScans.isEmpty())
+               System.out.println(String.format("  [%s] %s on %s", t.operations, shorten(t.sql), t.seqScans));
+         }//end for
+
+         // existing indexes that another index or no plan needs
+         List<Index> existing = existingIndexes();
+         List<Index> dropped = new ArrayList<Index>();
+         for (Index ix : existing) {
+            if (ix.definition == null)
+               continue;
+            for (Index other : existing) {
+               if (other != ix && !dropped.contains(other) && other.table.equals(ix.table) && (other.columns + ", ").startsWith(ix.columns + ", ")) {
+                  ix.reason = other.columns.equals(ix.columns) ? "same columns as " + other.name
+                        : "prefix of " + other.name + " (" + other.columns + ")";
+                  break;
+               }//end if
+            }//end for
+            if (ix.reason == null && !usedByWorkload(ix, workload))
+               ix.reason = "not used by any menu query plan";
+            if (ix.reason != null)
+               dropped.add(ix);
+         }//end for
+
+         // one candidate at a time, against the templates that read its table
+         List<Index> chosen = new ArrayList<Index>();
+         for (Index cand : CANDIDATES) {
+            if (covered(cand, existing, dropped))
+               continue;
+            execute(cand.definition);
+            for (Template t : workload.values()) {
+               if (!t.reads(cand.table) || t.cost <= 0)
+                  continue;
+               double gain = 1.0 - cost(t) / t.cost;
+               if (gain >= MIN_GAIN)
+                  cand.gains.put(t, gain);
+            }//end for
+            this.c.rollback();
+            if (!cand.gains.isEmpty())
+               chosen.add(cand);
+         }//end for
+
+         // the replacement as a whole
+         for (Index ix : dropped)
+            execute("DROP INDEX " + ix.name);
+         for (Index ix : chosen)
+            execute(ix.definition);
+         double after = 0;
+         Map<Template, Double> costAfter = new LinkedHashMap<Template, Double>();
+         for (Template t : workload.values()) {
+            double cost = cost(t);
+            costAfter.put(t, cost);
+            after += cost;
+         }//end for
+         this.c.rollback();
+
+         write(workload, existing, dropped, chosen, costAfter, before, after);
+         return true;
+      }finally{
+         this.c.rollback();
+         this.c.setAutoCommit(true);
+         this.esql.release(conn);
+      }//end try
+   }//end run
+
+   /* The SELECT templates of the 16 operations, bound to values found in the database. Inserts are left out, no index helps them */
+   private Map<String, Template> workload () throws SQLException {
+      final Object[] room = {1, 1};
+      final Object[] customer = {1, "", ""};
+      final Object[] company = {1, ""};
+      final Object[] staff = {1, 1};
+      final Object[] repair = {1, DateCodec.of(2015, 1, 1)};
+      final Object[] days = {DateCodec.of(2015, 1, 1), DateCodec.of(2015, 12, 31)};
+      this.esql.forEachRow("SELECT r.hotelID, r.roomNo FROM Room r LIMIT 1", rs -> { room[0] = rs.getInt(1); room[1] = rs.getInt(2); });
+      this.esql.forEachRow("SELECT c.customerID, c.fName, c.lName FROM Customer c LIMIT 1",
+            rs -> { customer[0] = rs.getInt(1); customer[1] = rs.getString(2).trim(); customer[2] = rs.getString(3).trim(); });
+      this.esql.forEachRow("SELECT m.cmpID, m.name FROM MaintenanceCompany m LIMIT 1", rs -> { company[0] = rs.getInt(1); company[1] = rs.getString(2).trim(); });
+      this.esql.forEachRow("SELECT s.SSN, s.employerID FROM Staff s WHERE s.role = 'Manager' LIMIT 1", rs -> { staff[0] = rs.getInt(1); staff[1] = rs.getInt(2); });
+      this.esql.forEachRow("SELECT r.rID, " + DateCodec.column("r.repairDate") + " FROM Repair r LIMIT 1", rs -> { repair[0] = rs.getInt(1); repair[1] = rs.getInt(2); });
+      this.esql.forEachRow("SELECT " + DateCodec.column("MAX(b.bookingDate)") + " - 30, " + DateCodec.column("MAX(b.bookingDate)") + " FROM Booking b HAVING COUNT(*) > 0",
+            rs -> { days[0] = rs.getInt(1); days[1] = rs.getInt(2); });
+      final int k = 10;
+
+      Map<String, Template> workload = new LinkedHashMap<String, Template>();
+      exists(workload, "2 4 5 7 8 9 10 13 16", DBProject.HOTEL_EXISTS, room[0]);
+      exists(workload, "2 4 5 6 7 16", DBProject.ROOM_EXISTS, room[0], room[1]);
+      exists(workload, "3 4", DBProject.COMPANY_EXISTS, company[0]);
+      exists(workload, "5", DBProject.CUSTOMER_EXISTS, customer[0]);
+      exists(workload, "7", DBProject.MANAGER_EXISTS, staff[0], staff[1]);
+      exists(workload, "7", DBProject.REPAIR_EXISTS, repair[0]);
+      exists(workload, "7", DBProject.REPAIR_ON_DATE_EXISTS, repair[0], repair[1]);
+      add(workload, "9", DBProject.BOOKED_ROOMS, room[0]);
+      add(workload, "10", WeekGrid.WEEK, days[0], days[0], days[1], room[0], room[0]);
+      add(workload, "9", DBProject.BOOKED_ROOMS_RANGE, room[0], room[0]);
+      add(workload, "11", DBProject.TOP_K_BOOKED_ROOMS + " LIMIT ?", days[0], days[1], k);
+      add(workload, "12 13", CustomerNames.CUSTOMER_BY_NAME, CustomerNames.normalize((String) customer[2]), CustomerNames.normalize((String) customer[1]));
+      add(workload, "12", DBProject.TOP_K_CUSTOMER_BOOKINGS + " LIMIT ?", customer[0], k);
+      add(workload, "13", DBProject.CUSTOMER_TOTAL_COST, room[0], customer[0], days[0], days[1]);
+      add(workload, "13", Rollups.CUSTOMER_TOTAL_COST, customer[0], room[0], days[0], days[1], customer[0], room[0], days[0], days[0], days[1], days[1], customer[0]);
+      add(workload, "14", DBProject.COMPANY_REPAIRS, company[1]);
+      add(workload, "15", DBProject.TOP_K_COMPANIES + " LIMIT ?", k);
+      add(workload, "16", DBProject.ROOM_REPAIRS_PER_YEAR, room[0], room[1]);
+      add(workload, "16", DBProject.HOTEL_REPAIRS_PER_YEAR, room[0]);
+      add(workload, "16", DBProject.ALL_REPAIRS_PER_YEAR);
+      return workload;
+   }//end workload
+
+   /* Existence checks are sent wrapped in EXISTS, see DBProject.exists */
+   private static void exists (Map<String, Template> workload, String operations, String sql, Object... params) {
+      add(workload, operations, "SELECT EXISTS (" + sql + ")", params);
+   }
+
+   private static void add (Map<String, Template> workload, String operations, String sql, Object... params) {
+      Template t = workload.get(sql);
+      if (t == null)
+         workload.put(sql, new Template(operations, sql, params));
+      else
+         t.operations += " " + operations;
+   }
+
+   /* EXPLAINs the template, keeping its total cost and the tables it scans sequentially */
+   private void explain (Template t) throws SQLException {
+      t.seqScans.clear();
+      t.cost = plan(t, t.seqScans);
+   }
+
+   private double cost (Template t) throws SQLException {
+      return plan(t, null);
+   }
+
+   private double plan (Template t, List<String> seqScans) throws SQLException {
+      double cost = -1;
+      try (PreparedStatement stmt = this.c.prepareStatement("EXPLAIN " + t.sql)) {
+         for (int i = 0; i < t.params.length; ++i)
+            stmt.setObject(i + 1, t.params[i]);
+         ResultSet rs = stmt.executeQuery();
+         while (rs.next()) {
+            String line = rs.getString(1);
+            Matcher m = COST.matcher(line);
+            if (cost < 0 && m.find())
+               cost = Double.parseDouble(m.group(1));
+            m = SEQ_SCAN.matcher(line);
+            if (seqScans != null && m.find() && !seqScans.contains(m.group(1)))
+               seqScans.add(m.group(1));
+         }//end while
+         rs.close();
+      }//end try
+      return cost;
+   }//end plan
+
+   /* The plain indexes of the project tables. Indexes backing a constraint are listed with a null definition, they cannot be dropped */
+   private List<Index> existingIndexes () throws SQLException {
+      List<Index> found = new ArrayList<Index>();
+      StringBuilder tables = new StringBuilder();
+      for (String table : TABLES)
+         tables.append(tables.length() == 0 ? "'" : ", '").append(table).append("'");
+      String sql = "SELECT i.relname, t.relname, pg_get_indexdef(x.indexrelid), EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = x.indexrelid)"
+            + " FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid JOIN pg_class t ON t.oid = x.indrelid JOIN pg_namespace n ON n.oid = t.relnamespace"
+            + " WHERE n.nspname = current_schema() AND t.relname IN (" + tables + ") ORDER BY t.relname, i.relname";
+      try (Statement stmt = this.c.createStatement()) {
+         ResultSet rs = stmt.executeQuery(sql);
+         while (rs.next()) {
+            String def = rs.getString(3);
+            int open = def.indexOf('(', def.indexOf(" USING "));
+            int close = def.lastIndexOf(')');
+            String columns = def.substring(open + 1, close);
+            // expression and partial indexes are left alone
+            if (columns.indexOf('(') >= 0 || def.indexOf(" WHERE ", close) >= 0 || def.indexOf(" USING btree ") < 0)
+               continue;
+            found.add(new Index(rs.getString(1), rs.getString(2), columns, rs.getBoolean(4) ? null : def));
+         }//end while
+         rs.close();
+      }//end try
+      return found;
+   }//end existingIndexes
+
+   /* True when the cost of some template rises once the index is gone */
+   private boolean usedByWorkload (Index ix, Map<String, Template> workload) throws SQLException {
+      execute("DROP INDEX " + ix.name);
+      try {
+         for (Template t : workload.values()) {
+            if (t.reads(ix.table) && cost(t) > t.cost * 1.01)
+               return true;
+         }//end for
+         return false;
+      }finally{
+         this.c.rollback();
+      }//end try
+   }//end usedByWorkload
+
+   /* True when a kept index already starts with the candidate's columns */
+   private static boolean covered (Index cand, List<Index> existing, List<Index> dropped) {
+      for (Index ix : existing) {
+         if (ix.table.equals(cand.table) && !dropped.contains(ix) && (ix.columns + ", ").startsWith(cand.columns + ", "))
+            return true;
+      }//end for
+      return false;
+   }//end covered
+
+   private void execute (String sql) throws SQLException {
+      try (Statement stmt = this.c.createStatement()) {
+         stmt.execute(sql);
+      }//end try
+   }
+
+   private static String shorten (String sql) {
+      return sql.length() <= 90 ? sql : sql.substring(0, 87) + "...";
+   }
+
+   private static String percent (double before, double after) {
+      return before <= 0 ? "n/a" : String.format("%+.1f%%", (after - before) * 100.0 / before);
+   }
+
+   /* Writes the replacement index script and prints the summary */
+   private void write (Map<String, Template> workload, List<Index> existing, List<Index> dropped, List<Index> chosen,
+                       Map<Template, Double> costAfter, double before, double after) throws IOException {
+      try (PrintWriter out = new PrintWriter(new FileWriter(this.output))) {
+         out.println("-- Replacement for index.sql, written by the DBProject advise mode.");
+         out.println(String.format("-- Plan cost of the menu queries: %.2f before, %.2f after (%s).", before, after, percent(before, after)));
+         out.println();
+         for (Index ix : existing) {
+            if (ix.definition != null && !dropped.contains(ix))
+               out.println("DROP INDEX IF EXISTS " + ix.name + ";");
+         }//end for
+         for (Index ix : chosen)
+            out.println("DROP INDEX IF EXISTS " + ix.name + ";");
+         out.println();
+
+         // a plain DROP INDEX would lock the table against readers too
+         for (Index ix : dropped) {
+            out.println("-- dropped " + ix.name + ": " + ix.reason);
+            out.println("DROP INDEX CONCURRENTLY IF EXISTS " + ix.name + ";");
+         }//end for
+         for (Index ix : existing) {
+            if (ix.definition != null && !dropped.contains(ix)) {
+               out.println();
+               out.println("-- kept, used by the menu query plans");
+               out.println(ix.definition + ";");
+            }//end if
+         }//end for
+         for (Index ix : chosen) {
+            out.println();
+            for (Map.Entry<Template, Double> g : ix.gains.entrySet()) {
+               Template t = g.getKey();
+               out.println(String.format("-- [%s] %s: cost %.2f -> %.2f (%s)", t.operations, shorten(t.sql), t.cost,
+                     t.cost * (1.0 - g.getValue()), percent(t.cost, t.cost * (1.0 - g.getValue()))));
+            }//end for
+            out.println(ix.definition + ";");
+         }//end for
+      }//end try
+
+      System.out.println();
+      for (Index ix : dropped)
+         System.out.println("Drop " + ix.name + " on " + ix.table + " concurrently: " + ix.reason);
+      for (Index ix : chosen)
+         System.out.println("Create " + ix.name + " on " + ix.table + " (" + ix.columns + "), helps " + ix.gains.size() + " queries");
+      System.out.println();
+      System.out.println("Plan cost per query, current -> recommended:");
+      for (Template t : workload.values()) {
+         double cost = costAfter.get(t);
+         System.out.println(String.format("  %10.2f -> %10.2f %8s  [%s] %s", t.cost, cost, percent(t.cost, cost), t.operations, shorten(t.sql)));
+      }//end for
+      System.out.println(String.format("Total plan cost %.2f -> %.2f (%s)", before, after, percent(before, after)));
+      System.out.println("Index script written to " + this.output);
+   }//end write
+
+}//end IndexAdvisor
@@ -0,0 +1,395 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs the query part of the report operations in the background,
+ * so the clerk can go on using the menu while a long report runs.  Every
+ * report becomes a job in a table; its output is collected and shown once it
+ * is finished, and a running job can be cancelled, which cancels the
+ * statements it is executing on the server.  pg73jdbc3.jar cannot always
+ * reach the server to cancel; the job then stops at the next row it reads,
+ * see checkCancelled, once the server has answered.
+ *
+ * The output of a job is kept in memory up to OUTPUT_MEMORY_BYTES, past
+ * that it goes to a temporary file, so a large report running as a job
+ * does not sit in the heap.
+ *
+ * A job that finishes within QUICK_WAIT_MS is shown straight away, so short
+ * reports look the same as before.  Until start is called, as in the batch
+ * mode and the benchmark, submit runs the report on the calling thread.
+ */
+public class Jobs {
+
+   // how long submit waits for a job before handing the menu back
+   static final long QUICK_WAIT_MS = Long.getLong("dbproject.jobs.quickWaitMs", 300L);
+   // output of a job kept in memory before it is moved to a temporary file
+   static final int OUTPUT_MEMORY_BYTES = Integer.getInteger("dbproject.jobs.outputMemoryBytes", 1 << 20);
+
+   public enum State { RUNNING, DONE, FAILED, CANCELLED }
+
+   /**
+    * The query part of a report, run on a job thread.  Everything it prints
+    * goes to the job's output.
+    */
+   public interface Body {
+      void run () throws Exception;
+   }//end Body
+
+   /**
+    * The output of a job, in memory up to OUTPUT_MEMORY_BYTES and in a
+    * temporary file past that.  The job and the threads it fans out to
+    * write it, show reads it once the job is finished.
+    */
+   static class Output extends OutputStream {
+      private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+      private File file = null;
+      private OutputStream spill = null;
+
+      @Override
+      public synchronized void write (int b) throws IOException {
+         write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public synchronized void write (byte[] b, int off, int len) throws IOException {
+         if (this.spill == null && this.memory.size() + len > OUTPUT_MEMORY_BYTES) {
+            this.file = File.createTempFile("dbproject-job", ".out");
+            this.file.deleteOnExit();
+            this.spill = new BufferedOutputStream(new FileOutputStream(this.file), 1 << 16);
+            this.memory.writeTo(this.spill);
+            this.memory = null;
+         }//end if
+         if (this.spill != null)
+            this.spill.write(b, off, len);
+         else
+            this.memory.write(b, off, len);
+      }
+
+      /* Copies the output to out and frees it */
+      synchronized void moveTo (OutputStream out) throws IOException {
+         if (this.spill == null) {
+            this.memory.writeTo(out);
+            this.memory.reset();
+            return;
+         }//end if
+         this.spill.close();
+         try (InputStream in = new FileInputStream(this.file)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int n; (n = in.read(buffer)) > 0; )
+               out.write(buffer, 0, n);
+         }finally{
+            if (!this.file.delete())
+               this.file.deleteOnExit();
+            this.spill = null;
+            this.memory = new ByteArrayOutputStream();
+         }//end try
+      }
+   }//end Output
+
+   /**
+    * One submitted report.
+    */
+   static class Job {
+      final int id;
+      final String name;
+      final long started = System.nanoTime();
+      final Output output = new Output();
+      final CountDownLatch finished = new CountDownLatch(1);
+      volatile State state = State.RUNNING;
+      volatile long ended = 0;
+      volatile boolean cancelled = false;
+      volatile boolean announced = false;
+      // statements being executed, more than one when a report fans out, see callIn
+      final Set<Statement> statements = Collections.newSetFromMap(new ConcurrentHashMap<Statement, Boolean>());
+      volatile RowFormatter rows = null;
+      // rows the thread's formatter had written before this job, job threads are reused
+      volatile long firstRow = 0;
+
+      Job (int id, String name) {
+         this.id = id;
+         this.name = name;
+      }
+
+      double seconds () {
+         return ((this.ended != 0 ? this.ended : System.nanoTime()) - this.started) / 1e9;
+      }
+   }//end Job
+
+   private static final Map<Integer, Job> TABLE = new ConcurrentSkipListMap<Integer, Job>();
+   private static final ThreadLocal<Job> CURRENT = new ThreadLocal<Job>();
+   private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+   private static PrintStream console = null;
+   private static ExecutorService pool = null;
+
+   /**
+    * Sends the output of every job thread to its job and starts running
+    * reports in the background.  Called once by the interactive menu.
+    */
+   public static synchronized void start () {
+      if (pool != null)
+         return;
+      console = System.out;
+      // a job's System.out is its own output, every other thread still writes to the console
+      System.setOut(new PrintStream(new OutputStream() {
+         public void write (int b) throws IOException {
+            Job job = CURRENT.get();
+            if (job != null)
+               job.output.write(b);
+            else
+               console.write(b);
+         }
+         public void write (byte[] b, int off, int len) throws IOException {
+            Job job = CURRENT.get();
+            if (job != null)
+               job.output.write(b, off, len);
+            else
+               console.write(b, off, len);
+         }
+         public void flush () {
+            if (CURRENT.get() == null)
+               console.flush();
+         }
+      }, true));
+      AtomicInteger threads = new AtomicInteger(1);
+      pool = Executors.newCachedThreadPool(r -> {
+         Thread t = new Thread(r, "report-job-" + threads.getAndIncrement());
+         t.setDaemon(true);
+         return t;
+      });
+   }//end start
+
+   /**
+    * Runs the query part of a report as a job.  When the job finishes within
+    * QUICK_WAIT_MS its output is printed here, otherwise the menu comes back
+    * and the job can be followed with the jobs menu option.
+    *
+    * @param name the report name shown in the job table and the statistics
+    * @param body the queries and printing of the report
+    */
+   public static void submit (String name, Body body) {
+      if (pool == null) {
+         try {
+            body.run();
+         }catch (Exception e) {
+            System.out.println(e.getMessage());
+         }//end try
+         return;
+      }//end if
+      Job job = new Job(NEXT_ID.getAndIncrement(), name);
+      TABLE.put(job.id, job);
+      pool.execute(() -> run(job, body));
+      try {
+         if (job.finished.await(QUICK_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            show(job);
+            return;
+         }//end if
+      }catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }//end try
+      System.out.println(String.format("The report is running as job %d, see the jobs menu option for its progress and output", job.id));
+   }//end submit
+
+   private static void run (Job job, Body body) {
+      CURRENT.set(job);
+      RowFormatter rows = RowFormatter.get();
+      // published only once the output is flushed, as show reads it as soon as the job is no longer running
+      State[] outcome = {State.FAILED};
+      try {
+         rows.redirect(new OutputStreamWriter(System.out));
+         job.firstRow = rows.rows();
+         job.rows = rows;
+         Stats.operation(job.name + " job", () -> {
+            try {
+               body.run();
+               outcome[0] = job.cancelled ? State.CANCELLED : State.DONE;
+            }catch (Exception e) {
+               outcome[0] = job.cancelled ? State.CANCELLED : State.FAILED;
+               System.out.println(job.cancelled ? "Cancelled" : e.getMessage());
+            }//end try
+         });
+      }catch (IOException e) {
+         outcome[0] = State.FAILED;
+      }finally{
+         try {
+            rows.redirect(null);
+         }catch (IOException e) {
+            // System.out keeps write errors to itself, see PrintStream
+         }//end try
+         System.out.flush();
+         CURRENT.remove();
+         job.ended = System.nanoTime();
+         job.state = outcome[0];
+         job.finished.countDown();
+      }//end try
+   }//end run
+
+   /**
+    * Tells the running job, if the calling thread runs one, that a statement
+    * is being executed so cancel can reach it.  Must be matched by executed.
+    *
+    * @param stmt the statement about to be executed
+    * @throws java.sql.SQLException when the job was cancelled before the statement started
+    */
+   public static void executing (Statement stmt) throws SQLException {
+      Job job = CURRENT.get();
+      if (job == null)
+         return;
+      job.statements.add(stmt);
+      if (job.cancelled)
+         throw new SQLException("Cancelled");
+   }//end executing
+
+   /**
+    * Stops the running job, if the calling thread runs one, once it was
+    * cancelled.  Called for every row read, so a job stops even when its
+    * statement could not be cancelled on the server.
+    *
+    * @throws java.sql.SQLException when the job was cancelled
+    */
+   public static void checkCancelled () throws SQLException {
+      Job job = CURRENT.get();
+      if (job != null && job.cancelled)
+         throw new SQLException("Cancelled");
+   }//end checkCancelled
+
+   /**
+    * Tells the running job that a statement passed to executing finished.
+    */
+   public static void executed (Statement stmt) {
+      Job job = CURRENT.get();
+      if (job != null && stmt != null)
+         job.statements.remove(stmt);
+   }//end executed
+
+   /**
+    * @return the job the calling thread runs, or null
+    */
+   static Job current () {
+      return CURRENT.get();
+   }//end current
+
+   /**
+    * Runs part of a job on another thread, so the statements of the part can
+    * be cancelled with the job and its output goes to the job.
+    *
+    * @param job the job, as returned by current on the job's thread, or null
+    * @param task the part to run
+    * @return what the task returned
+    */
+   static <T> T callIn (Job job, Callable<T> task) throws Exception {
+      Job previous = CURRENT.get();
+      CURRENT.set(job);
+      try {
+         return task.call();
+      }finally{
+         CURRENT.set(previous);
+      }//end try
+   }//end callIn
+
+   /**
+    * Cancels a running job, cancelling its statements on the server when the
+    * driver can.  The job stops at its next statement or row either way.
+    *
+    * @return false when there is no running job with this number
+    */
+   public static boolean cancel (int id) {
+      Job job = TABLE.get(id);
+      if (job == null || job.state != State.RUNNING)
+         return false;
+      job.cancelled = true;
+      for (Statement stmt : job.statements) {
+         try {
+            stmt.cancel();
+         }catch (SQLException e) {
+            // pg73jdbc3.jar may not reach the server to cancel, checkCancelled stops the job then
+         }//end try
+      }//end for
+      return true;
+   }//end cancel
+
+   /**
+    * Prints one line for every job that finished since the last call.
+    */
+   public static void announce () {
+      for (Job job : TABLE.values()) {
+         if (job.state != State.RUNNING && !job.announced) {
+            job.announced = true;
+            System.out.println(String.format("Job %d (%s) is %s, see the jobs menu option for its output", job.id, job.name, job.state.name().toLowerCase()));
+         }//end if
+      }//end for
+   }//end announce
+
+   /**
+    * @return the job table, one line per job
+    */
+   public static List<String> list () {
+      List<String> lines = new ArrayList<String>();
+      for (Job job : TABLE.values()) {
+         RowFormatter rows = job.rows;
+         lines.add(String.format("%5d  %-9s %9.1f s %9d rows  %s", job.id, job.state.name().toLowerCase(), job.seconds(),
+               rows == null ? 0 : rows.rows() - job.firstRow, job.name));
+      }//end for
+      return lines;
+   }//end list
+
+   /**
+    * Prints the output of a finished job and removes it from the table.
+    *
+    * @return false when there is no finished job with this number
+    */
+   public static boolean show (int id) {
+      Job job = TABLE.get(id);
+      if (job == null || job.state == State.RUNNING)
+         return false;
+      show(job);
+      return true;
+   }//end show
+
+   private static void show (Job job) {
+      TABLE.remove(job.id);
+      System.out.flush();
+      try {
+         job.output.moveTo(console != null ? console : System.out);
+      }catch (IOException e) {
+         System.out.println("Error reading the output of job " + job.id + ": " + e.getMessage());
+      }//end try
+      System.out.flush();
+   }//end show
+
+}//end Jobs
@@ -0,0 +1,61 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+
+/**
+ * This class hands out primary keys for one table from a database sequence
+ * using the hi/lo scheme.  The sequence is created with INCREMENT BY
+ * BLOCK_SIZE, so every nextval reserves BLOCK_SIZE keys for this process and
+ * the keys in between are handed out without going to the database.
+ *
+ * Keys stay unique across sessions because every session reserves its own
+ * block.  Keys of a block that is not used up before the program exits are
+ * skipped, so the key column can have gaps.
+ */
+public class KeyAllocator {
+
+   // must match the INCREMENT BY of the sequences created in sql/create.sql
+   static final int BLOCK_SIZE = 50;
+
+   private final DBProject esql;
+   private final String nextval;
+   private int next = 0;
+   private int limit = 0;
+
+   /**
+    * @param esql the database the sequence lives in
+    * @param sequence the name of the sequence, e.g. booking_id_seq
+    */
+   public KeyAllocator (DBProject esql, String sequence) {
+      this.esql = esql;
+      this.nextval = "SELECT nextval('" + sequence + "')";
+   }//end KeyAllocator
+
+   /**
+    * Returns the next unused key, reserving a new block from the sequence
+    * when the current one is used up.
+    *
+    * @return a key no other session will be handed
+    * @throws java.sql.SQLException when a new block could not be reserved
+    */
+   public synchronized int nextKey () throws SQLException {
+      if (this.next >= this.limit) {
+         int hi = Integer.parseInt(this.esql.getSelectString(this.nextval));
+         this.next = hi;
+         this.limit = hi + BLOCK_SIZE;
+      }//end if
+      return this.next++;
+   }//end nextKey
+
+}//end KeyAllocator
@@ -0,0 +1,135 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class is a hash map from primitive long keys to objects, using open
+ * addressing with linear probing so lookups neither box the key nor allocate
+ * an entry.  Composite keys such as (hotelID, roomNo) are packed into one long
+ * with key.
+ *
+ * Values must not be null.  The map is not synchronized.
+ */
+public class LongHashMap<V> {
+
+   private long[] keys;
+   private Object[] values;
+   private int size = 0;
+
+   public LongHashMap () {
+      this(16);
+   }//end LongHashMap
+
+   public LongHashMap (int expected) {
+      int capacity = 16;
+      while (capacity < expected * 2)
+         capacity <<= 1;
+      this.keys = new long[capacity];
+      this.values = new Object[capacity];
+   }//end LongHashMap
+
+   /**
+    * Packs two int keys, e.g. hotelID and roomNo, into one map key.
+    */
+   public static long key (int high, int low) {
+      return ((long) high << 32) | (low & 0xffffffffL);
+   }//end key
+
+   /**
+    * @return the value stored for the key, or null
+    */
+   @SuppressWarnings("unchecked")
+   public V get (long key) {
+      int mask = this.keys.length - 1;
+      for (int i = slot(key, mask); this.values[i] != null; i = (i + 1) & mask) {
+         if (this.keys[i] == key)
+            return (V) this.values[i];
+      }//end for
+      return null;
+   }//end get
+
+   /**
+    * @return true when a value is stored for the key
+    */
+   public boolean containsKey (long key) {
+      return get(key) != null;
+   }//end containsKey
+
+   /**
+    * Stores the value for the key, replacing any previous value.
+    */
+   public void put (long key, V value) {
+      if (value == null)
+         throw new NullPointerException("LongHashMap does not store null values");
+      if ((this.size + 1) * 2 > this.keys.length)
+         grow();
+      int mask = this.keys.length - 1;
+      int i = slot(key, mask);
+      for (; this.values[i] != null; i = (i + 1) & mask) {
+         if (this.keys[i] == key) {
+            this.values[i] = value;
+            return;
+         }//end if
+      }//end for
+      this.keys[i] = key;
+      this.values[i] = value;
+      ++this.size;
+   }//end put
+
+   /**
+    * @return the number of keys in the map
+    */
+   public int size () {
+      return this.size;
+   }//end size
+
+   /**
+    * Callback used by forEach.
+    */
+   public interface Visitor<V> {
+      void visit (long key, V value);
+   }//end Visitor
+
+   /**
+    * Calls the visitor once for every key in the map, in no particular order.
+    */
+   @SuppressWarnings("unchecked")
+   public void forEach (Visitor<V> visitor) {
+      for (int i = 0; i < this.keys.length; ++i) {
+         if (this.values[i] != null)
+            visitor.visit(this.keys[i], (V) this.values[i]);
+      }//end for
+   }//end forEach
+
+   private static int slot (long key, int mask) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+   }//end slot
+
+   private void grow () {
+      long[] oldKeys = this.keys;
+      Object[] oldValues = this.values;
+      this.keys = new long[oldKeys.length * 2];
+      this.values = new Object[oldValues.length * 2];
+      int mask = this.keys.length - 1;
+      for (int j = 0; j < oldKeys.length; ++j) {
+         if (oldValues[j] == null)
+            continue;
+         int i = slot(oldKeys[j], mask);
+         while (this.values[i] != null)
+            i = (i + 1) & mask;
+         this.keys[i] = oldKeys[j];
+         this.values[i] = oldValues[j];
+      }//end for
+   }//end grow
+
+}//end LongHashMap
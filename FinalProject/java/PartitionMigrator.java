@@ -0,0 +1,221 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * This class turns the Booking and Repair tables of sql/create.sql into
+ * tables partitioned by range on bookingDate and repairDate, one partition
+ * per year or per month, while the program keeps using them.  Queries bound
+ * by date, such as the reports on a date range, then only read the
+ * partitions of those dates.  The B-tree date indexes of index.sql become
+ * BRIN indexes of the same name: a partition only holds one period, whose
+ * rows mostly arrive in date order, so a BRIN index of a few pages narrows
+ * a date range within it as well, and costs inserts far less.  index.sql,
+ * which compile.sh runs on every start, creates them as BRIN as well once
+ * the tables are partitioned.
+ *
+ * A table is migrated in four steps:
+ *   1. the partitioned copy <table>_new is created with its keys, foreign
+ *      keys, partitions and indexes;
+ *   2. a trigger forwards every row inserted into the table to the copy;
+ *   3. the rows are copied in CHUNK_KEYS key ranges, each in its own
+ *      transaction, so the table stays usable.  The key range is read once
+ *      the trigger exists, so a row is either below its end or forwarded;
+ *   4. in one short transaction the table is dropped and the copy renamed.
+ * The program never updates or deletes bookings and repairs; rows changed
+ * that way by another client during the copy are not carried over.  A run
+ * that was interrupted starts again from step 1.
+ *
+ * The primary key of a partitioned table must hold the partition column, so
+ * it becomes (bID, bookingDate) and (rID, repairDate).  Request can then no
+ * longer reference Repair(rID) with a foreign key; requestRepairConstraint is
+ * dropped and the repair is checked by the program, see REPAIR_EXISTS.
+ */
+public class PartitionMigrator {
+
+   // keys copied per transaction
+   static final long CHUNK_KEYS = Long.getLong("dbproject.partition.chunkKeys", 50000L);
+
+   /**
+    * Describes one table to partition: its key and date columns, the
+    * constraints and indexes the partitioned table is created with, and the
+    * foreign keys of other tables to drop.
+    */
+   static class TableSpec {
+      final String table;
+      final String key;
+      final String date;
+      // the foreign keys of sql/create.sql, as ADD CONSTRAINT clauses
+      final String[] foreignKeys;
+      // the indexes of index.sql, the date ones as BRIN, as name and USING clause
+      final String[][] indexes;
+      // the foreign keys referencing the table, as table and constraint name
+      final String[][] references;
+
+      TableSpec (String table, String key, String date, String[] foreignKeys, String[][] indexes, String[][] references) {
+         this.table = table;
+         this.key = key;
+         this.date = date;
+         this.foreignKeys = foreignKeys;
+         this.indexes = indexes;
+         this.references = references;
+      }
+
+      String copy () {
+         return this.table + "_new";
+      }
+
+      String trigger () {
+         return this.table + "_forward";
+      }
+   }//end TableSpec
+
+   static final TableSpec[] TABLES = {
+      new TableSpec("Booking", "bID", "bookingDate",
+            new String[] {
+               "bookingCustomerConstraint FOREIGN KEY(customer) REFERENCES Customer(customerID) ON DELETE SET DEFAULT",
+               "bookingRoomConstraint FOREIGN KEY(hotelID, roomNo) REFERENCES Room(hotelID, roomNo) ON DELETE SET DEFAULT"},
+            new String[][] {
+               {"bookingIndex", "USING BRIN (bookingDate)"},
+               {"bookingCustomerIndex", "USING BTREE (customer)"}},
+            new String[0][]),
+      new TableSpec("Repair", "rID", "repairDate",
+            new String[] {
+               "repairMcmpConstraint FOREIGN KEY(mCompany) REFERENCES MaintenanceCompany(cmpID) ON DELETE SET DEFAULT",
+               "repairRoomConstraint FOREIGN KEY(hotelID, roomNo) REFERENCES Room(hotelID, roomNo) ON DELETE SET DEFAULT"},
+            new String[][] {
+               {"repairIndex", "USING BRIN (repairDate)"}},
+            new String[][] {{"Request", "requestRepairConstraint"}})
+   };
+
+   private final DBProject esql;
+   private final boolean monthly;
+
+   /**
+    * @param esql the database holding the tables
+    * @param monthly true for one partition per month, false for one per year
+    */
+   public PartitionMigrator (DBProject esql, boolean monthly) {
+      this.esql = esql;
+      this.monthly = monthly;
+   }
+
+   /**
+    * Partitions every table of TABLES that is not partitioned yet.
+    *
+    * @return true when every table is partitioned
+    */
+   public boolean run () throws SQLException {
+      for (TableSpec spec : TABLES) {
+         if (this.esql.exists("SELECT 1 FROM pg_class c WHERE c.relname = lower(?) AND c.relkind = 'p'", spec.table)) {
+            System.out.println(spec.table + " is already partitioned");
+            continue;
+         }//end if
+         migrate(spec);
+      }//end for
+      return true;
+   }//end run
+
+   private void migrate (TableSpec spec) throws SQLException {
+      long start = System.currentTimeMillis();
+      // the partitions run from the first date up to a period after today, later dates go to the default partition
+      final long[] range = new long[4];
+      this.esql.forEachRow("SELECT " + DateCodec.column("MIN(t." + spec.date + ")") + ", " + DateCodec.column("GREATEST(MAX(t." + spec.date + "), CURRENT_DATE)")
+            + " FROM " + spec.table + " t", rs -> {
+               range[1] = rs.getInt(2);
+               range[0] = rs.getObject(1) == null ? range[1] : rs.getInt(1);
+            });
+      int partitions = create(spec, (int) range[0], (int) range[1]);
+
+      // rows inserted from now on reach the copy through the trigger, the ones before through the chunks
+      this.esql.executeUpdate("CREATE OR REPLACE FUNCTION " + spec.trigger() + "() RETURNS trigger AS $$ BEGIN "
+            + "INSERT INTO " + spec.copy() + " VALUES (NEW.*) ON CONFLICT DO NOTHING; RETURN NULL; END $$ LANGUAGE plpgsql");
+      this.esql.executeUpdate("CREATE TRIGGER " + spec.trigger() + " AFTER INSERT ON " + spec.table
+            + " FOR EACH ROW EXECUTE PROCEDURE " + spec.trigger() + "()");
+      // read after the trigger exists: CREATE TRIGGER waited for the inserts in progress, later ones are forwarded
+      this.esql.forEachRow("SELECT MIN(t." + spec.key + "), MAX(t." + spec.key + ") FROM " + spec.table + " t", rs -> {
+         range[2] = rs.getLong(1);
+         range[3] = rs.getLong(2);
+      });
+      String chunk = "INSERT INTO " + spec.copy() + " SELECT * FROM " + spec.table + " WHERE " + spec.key + " >= ? AND " + spec.key + " < ? ON CONFLICT DO NOTHING";
+      long copied = 0;
+      for (long from = range[2]; from <= range[3]; from += CHUNK_KEYS)
+         copied += this.esql.executeUpdate(chunk, from, from + CHUNK_KEYS);
+
+      swap(spec);
+      System.out.println(String.format("Partitioned %s by %s into %d %s partitions: %d rows copied in %dms",
+            spec.table, spec.date, partitions, this.monthly ? "monthly" : "yearly", copied, System.currentTimeMillis() - start));
+   }//end migrate
+
+   /* Creates the partitioned copy of the table with its partitions from the first day to a period after the last, returns the number of partitions */
+   private int create (TableSpec spec, int firstDay, int lastDay) throws SQLException {
+      String copy = spec.copy();
+      // left over by an interrupted run, the trigger goes first so no insert reaches a dropped copy
+      this.esql.executeUpdate("DROP TRIGGER IF EXISTS " + spec.trigger() + " ON " + spec.table);
+      this.esql.executeUpdate("DROP TABLE IF EXISTS " + copy + " CASCADE");
+      this.esql.executeUpdate("CREATE TABLE " + copy + " (LIKE " + spec.table + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (" + spec.date + ")");
+      this.esql.executeUpdate("ALTER TABLE " + copy + " ADD PRIMARY KEY (" + spec.key + ", " + spec.date + ")");
+      // the foreign keys are checked row by row while copying, adding them afterwards would scan the table under the swap's lock
+      for (String foreignKey : spec.foreignKeys)
+         this.esql.executeUpdate("ALTER TABLE " + copy + " ADD CONSTRAINT " + foreignKey);
+
+      int partitions = 0;
+      int last = next(lastDay);
+      for (int day = this.monthly ? DateCodec.firstOfMonth(firstDay) : DateCodec.of(DateCodec.year(firstDay), 1, 1); day <= last; day = next(day)) {
+         int date = DateCodec.yyyymmdd(day);
+         String name = spec.table + (this.monthly ? "_m" + date / 100 : "_y" + date / 10000);
+         this.esql.executeUpdate("CREATE TABLE " + name + " PARTITION OF " + copy + " FOR VALUES FROM ('"
+               + DateCodec.appendIso(new StringBuilder(), day) + "') TO ('" + DateCodec.appendIso(new StringBuilder(), next(day)) + "')");
+         ++partitions;
+      }//end for
+      this.esql.executeUpdate("CREATE TABLE " + spec.table + "_default PARTITION OF " + copy + " DEFAULT");
+
+      for (String[] index : spec.indexes)
+         this.esql.executeUpdate("CREATE INDEX " + index[0] + "_new ON " + copy + " " + index[1]);
+      return partitions;
+   }//end create
+
+   /* Returns the first day of the partition after the one holding the day */
+   private int next (int day) {
+      return this.monthly ? DateCodec.firstOfNextMonth(day) : DateCodec.of(DateCodec.year(day) + 1, 1, 1);
+   }//end next
+
+   /* Replaces the table by its partitioned copy in one transaction */
+   private void swap (TableSpec spec) throws SQLException {
+      ConnectionPool.PooledConnection conn = this.esql.borrow();
+      Connection c = conn.connection();
+      c.setAutoCommit(false);
+      try {
+         conn.prepare("LOCK TABLE " + spec.table + " IN ACCESS EXCLUSIVE MODE").executeUpdate();
+         for (String[] reference : spec.references)
+            conn.prepare("ALTER TABLE " + reference[0] + " DROP CONSTRAINT IF EXISTS " + reference[1]).executeUpdate();
+         // drops the trigger and the old indexes with the table; anything else still depending on it makes the swap fail
+         conn.prepare("DROP TABLE " + spec.table).executeUpdate();
+         conn.prepare("DROP FUNCTION " + spec.trigger() + "()").executeUpdate();
+         conn.prepare("ALTER TABLE " + spec.copy() + " RENAME TO " + spec.table).executeUpdate();
+         conn.prepare("ALTER TABLE " + spec.table + " RENAME CONSTRAINT " + spec.copy() + "_pkey TO " + spec.table + "_pkey").executeUpdate();
+         for (String[] index : spec.indexes)
+            conn.prepare("ALTER INDEX " + index[0] + "_new RENAME TO " + index[0]).executeUpdate();
+         c.commit();
+      }catch (SQLException e) {
+         c.rollback();
+         throw e;
+      }finally{
+         c.setAutoCommit(true);
+         this.esql.release(conn);
+      }//end try
+   }//end swap
+
+}//end PartitionMigrator
@@ -0,0 +1,208 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class keeps the reference tables the menu operations validate against
+ * in memory: the hotel IDs, the (hotelID, roomNo) pairs, the maintenance
+ * company IDs and the role and employer of every staff member.  It is loaded
+ * once at startup and kept current by addRoom and addMaintenanceCompany, so
+ * checking a key costs no round trip.
+ *
+ * A key that is not in the cache may have been added by another process, so
+ * it is looked up in the database and remembered when found.  Lookups
+ * answered from memory count as hits, the ones that went to the database as
+ * misses.  Rows are never deleted by this program, so cached keys stay valid.
+ */
+public class ReferenceCache {
+
+   private static final String STAFF = "SELECT S.SSN, S.role, S.employerID FROM Staff S";
+   private static final String STAFF_BY_SSN = STAFF + " WHERE S.SSN = ?";
+
+   /* The role and employer of one staff member */
+   public static class Staff {
+      public final String role;
+      public final int employerID;
+
+      Staff (String role, int employerID) {
+         this.role = role;
+         this.employerID = employerID;
+      }
+   }//end Staff
+
+   private final DBProject esql;
+   private final LongHashMap<Boolean> hotels = new LongHashMap<Boolean>(1 << 10);
+   private final LongHashMap<Boolean> rooms = new LongHashMap<Boolean>(1 << 14);
+   private final LongHashMap<Boolean> companies = new LongHashMap<Boolean>(1 << 10);
+   private final LongHashMap<Staff> staff = new LongHashMap<Staff>(1 << 12);
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   private ReferenceCache (DBProject esql) {
+      this.esql = esql;
+   }
+
+   /**
+    * Loads the Hotel, Room, MaintenanceCompany and Staff keys from the database.
+    *
+    * @param esql the database to read from
+    * @return the filled cache
+    * @throws java.sql.SQLException when the tables could not be read
+    */
+   public static ReferenceCache build (DBProject esql) throws SQLException {
+      ReferenceCache cache = new ReferenceCache(esql);
+      esql.forEachRow("SELECT H.hotelID FROM Hotel H", rs -> cache.hotels.put(rs.getLong(1), Boolean.TRUE));
+      esql.forEachRow("SELECT R.hotelID, R.roomNo FROM Room R", rs -> cache.rooms.put(LongHashMap.key(rs.getInt(1), rs.getInt(2)), Boolean.TRUE));
+      esql.forEachRow("SELECT M.cmpID FROM MaintenanceCompany M", rs -> cache.companies.put(rs.getLong(1), Boolean.TRUE));
+      esql.forEachRow(STAFF, rs -> cache.staff.put(rs.getLong(1), new Staff(rs.getString(2), rs.getInt(3))));
+      return cache;
+   }//end build
+
+   /**
+    * @return true when the hotel exists
+    */
+   public boolean hotel (int hotelID) throws SQLException {
+      if (cached(this.hotels, hotelID))
+         return true;
+      return remember(this.hotels, hotelID, this.esql.exists(DBProject.HOTEL_EXISTS, hotelID));
+   }//end hotel
+
+   /**
+    * @return true when the hotel has a room with this number
+    */
+   public boolean room (int hotelID, int roomNo) throws SQLException {
+      long key = LongHashMap.key(hotelID, roomNo);
+      if (cached(this.rooms, key))
+         return true;
+      return remember(this.rooms, key, this.esql.exists(DBProject.ROOM_EXISTS, hotelID, roomNo));
+   }//end room
+
+   /**
+    * @return true when the maintenance company exists
+    */
+   public boolean company (int cmpID) throws SQLException {
+      if (cached(this.companies, cmpID))
+         return true;
+      return remember(this.companies, cmpID, this.esql.exists(DBProject.COMPANY_EXISTS, cmpID));
+   }//end company
+
+   /**
+    * @return the role and employer of the staff member, or null when there is no such SSN
+    */
+   public Staff staff (int ssn) throws SQLException {
+      this.lock.readLock().lock();
+      try {
+         Staff s = this.staff.get(ssn);
+         if (s != null) {
+            this.hits.increment();
+            return s;
+         }//end if
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+      this.misses.increment();
+      final Staff[] found = new Staff[1];
+      this.esql.forEachRow(STAFF_BY_SSN, rs -> found[0] = new Staff(rs.getString(2), rs.getInt(3)), ssn);
+      if (found[0] != null)
+         put(this.staff, ssn, found[0]);
+      return found[0];
+   }//end staff
+
+   /**
+    * @return true when the staff member has the role and works at the hotel
+    */
+   public boolean staff (int ssn, String role, int hotelID) throws SQLException {
+      Staff s = staff(ssn);
+      return s != null && s.role.equals(role) && s.employerID == hotelID;
+   }//end staff
+
+   /**
+    * @return the IDs of every known hotel, sorted
+    */
+   public int[] hotels () {
+      this.lock.readLock().lock();
+      try {
+         int[] ids = new int[this.hotels.size()];
+         int[] n = {0};
+         this.hotels.forEach((key, value) -> ids[n[0]++] = (int) key);
+         Arrays.sort(ids);
+         return ids;
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end hotels
+
+   /**
+    * Records a room added by this program, and its hotel.
+    */
+   public void addRoom (int hotelID, int roomNo) {
+      put(this.rooms, LongHashMap.key(hotelID, roomNo), Boolean.TRUE);
+      put(this.hotels, hotelID, Boolean.TRUE);
+   }//end addRoom
+
+   /**
+    * Records a maintenance company added by this program.
+    */
+   public void addCompany (int cmpID) {
+      put(this.companies, cmpID, Boolean.TRUE);
+   }//end addCompany
+
+   /**
+    * @return a short description of the cache size and hit rate
+    */
+   public String summary () {
+      this.lock.readLock().lock();
+      try {
+         long h = this.hits.sum(), m = this.misses.sum();
+         return this.hotels.size() + " hotels, " + this.rooms.size() + " rooms, " + this.companies.size() + " companies, "
+               + this.staff.size() + " staff, " + h + " hits, " + m + " misses"
+               + (h + m == 0 ? "" : String.format(" (%.1f%% hit rate)", 100.0 * h / (h + m)));
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+   }//end summary
+
+   private boolean cached (LongHashMap<Boolean> map, long key) {
+      this.lock.readLock().lock();
+      try {
+         if (!map.containsKey(key))
+            return false;
+      }finally{
+         this.lock.readLock().unlock();
+      }//end try
+      this.hits.increment();
+      return true;
+   }//end cached
+
+   private boolean remember (LongHashMap<Boolean> map, long key, boolean found) {
+      this.misses.increment();
+      if (found)
+         put(map, key, Boolean.TRUE);
+      return found;
+   }//end remember
+
+   private <V> void put (LongHashMap<V> map, long key, V value) {
+      this.lock.writeLock().lock();
+      try {
+         map.put(key, value);
+      }finally{
+         this.lock.writeLock().unlock();
+      }//end try
+   }//end put
+
+}//end ReferenceCache
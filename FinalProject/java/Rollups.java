@@ -0,0 +1,125 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * This class maintains two rollups of the Booking table, created by
+ * sql/create.sql: HotelDayRollup holds the bookings and revenue of every
+ * (hotelID, day) and CustomerMonthRollup those of every (customer, hotelID,
+ * month), the month stored as its first day.
+ *
+ * Every booking made by this program updates both rollups in the same
+ * transaction as its insert: bookRoom through the DAY_FROM_INSERTED and
+ * MONTH_FROM_INSERTED sub-statements of its insert, the batch mode through
+ * add.  Rows loaded any other way are picked up by rebuild, which the load
+ * mode runs after loading bookings and the rollup mode runs on request.
+ */
+public class Rollups {
+
+   // sub-statements of an INSERT INTO Booking ... RETURNING * named inserted, see DBProject.insertChecked
+   static final String DAY_FROM_INSERTED = "INSERT INTO HotelDayRollup (hotelID, day, bookings, revenue) SELECT i.hotelID, i.bookingDate, 1, i.price FROM inserted i "
+         + "ON CONFLICT (hotelID, day) DO UPDATE SET bookings = HotelDayRollup.bookings + 1, revenue = HotelDayRollup.revenue + EXCLUDED.revenue";
+   static final String MONTH_FROM_INSERTED = "INSERT INTO CustomerMonthRollup (customer, hotelID, month, bookings, revenue) "
+         + "SELECT i.customer, i.hotelID, CAST(date_trunc('month', i.bookingDate) AS date), 1, i.price FROM inserted i "
+         + "ON CONFLICT (customer, hotelID, month) DO UPDATE SET bookings = CustomerMonthRollup.bookings + 1, revenue = CustomerMonthRollup.revenue + EXCLUDED.revenue";
+   // the same for one booking given by its values
+   static final String DAY_ADD = "INSERT INTO HotelDayRollup (hotelID, day, bookings, revenue) VALUES (?, " + DateCodec.PARAM + ", 1, ?) "
+         + "ON CONFLICT (hotelID, day) DO UPDATE SET bookings = HotelDayRollup.bookings + 1, revenue = HotelDayRollup.revenue + EXCLUDED.revenue";
+   static final String MONTH_ADD = "INSERT INTO CustomerMonthRollup (customer, hotelID, month, bookings, revenue) VALUES (?, ?, CAST(date_trunc('month', " + DateCodec.PARAM + ") AS date), 1, ?) "
+         + "ON CONFLICT (customer, hotelID, month) DO UPDATE SET bookings = CustomerMonthRollup.bookings + 1, revenue = CustomerMonthRollup.revenue + EXCLUDED.revenue";
+
+   static final String[] REBUILD = {
+      "DELETE FROM HotelDayRollup",
+      "INSERT INTO HotelDayRollup (hotelID, day, bookings, revenue) SELECT b.hotelID, b.bookingDate, COUNT(*), SUM(b.price) FROM Booking b GROUP BY b.hotelID, b.bookingDate",
+      "DELETE FROM CustomerMonthRollup",
+      "INSERT INTO CustomerMonthRollup (customer, hotelID, month, bookings, revenue) SELECT b.customer, b.hotelID, CAST(date_trunc('month', b.bookingDate) AS date), COUNT(*), SUM(b.price) "
+         + "FROM Booking b GROUP BY b.customer, b.hotelID, CAST(date_trunc('month', b.bookingDate) AS date)"
+   };
+
+   // whole months come from the rollup, the days before the first and after the last whole month from Booking
+   static final String CUSTOMER_TOTAL_COST = "SELECT c.fName, c.lName, SUM(t.price) FROM Customer c, ("
+         + "SELECT m.bookings, m.revenue AS price FROM CustomerMonthRollup m WHERE m.customer = ? and m.hotelID = ? and m.month >= " + DateCodec.PARAM + " and m.month < " + DateCodec.PARAM + " "
+         + "UNION ALL SELECT 1, b.price FROM Booking b WHERE b.customer = ? and b.hotelID = ? "
+         + "and ((b.bookingDate BETWEEN " + DateCodec.PARAM + " and " + DateCodec.PARAM + ") or (b.bookingDate BETWEEN " + DateCodec.PARAM + " and " + DateCodec.PARAM + "))"
+         + ") t WHERE c.customerID = ? GROUP BY c.fName, c.lName HAVING SUM(t.bookings) > 0";
+
+   /**
+    * Adds one booking to both rollups on the given connection, in the
+    * transaction that inserts the booking.
+    *
+    * @param conn the connection the booking is inserted on
+    * @param booking the values bound to DBProject.INSERT_BOOKING
+    * @param batch true to add the updates to the statements' batches instead of running them
+    */
+   public static void add (ConnectionPool.PooledConnection conn, Object[] booking, boolean batch) throws SQLException {
+      // INSERT_BOOKING binds bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price
+      PreparedStatement day = conn.prepare(DAY_ADD, booking[2], booking[4], booking[6]);
+      PreparedStatement month = conn.prepare(MONTH_ADD, booking[1], booking[2], booking[4], booking[6]);
+      if (batch) {
+         day.addBatch();
+         month.addBatch();
+      }else {
+         day.executeUpdate();
+         month.executeUpdate();
+      }//end if
+   }//end add
+
+   /**
+    * Recomputes both rollups from the Booking table in one transaction.
+    *
+    * @return the number of rows written to HotelDayRollup and CustomerMonthRollup
+    */
+   public static int[] rebuild (DBProject esql) throws SQLException {
+      ConnectionPool.PooledConnection conn = esql.borrow();
+      Connection c = conn.connection();
+      c.setAutoCommit(false);
+      try {
+         int[] rows = new int[2];
+         for (int i = 0; i < REBUILD.length; ++i) {
+            int n = conn.prepare(REBUILD[i]).executeUpdate();
+            if (i % 2 == 1)
+               rows[i / 2] = n;
+         }//end for
+         c.commit();
+         return rows;
+      }catch (SQLException e) {
+         c.rollback();
+         throw e;
+      }finally{
+         c.setAutoCommit(true);
+         esql.release(conn);
+      }//end try
+   }//end rebuild
+
+   /**
+    * Prints what the customer spent at the hotel from one day to another,
+    * both included.  The whole months of the range are read from
+    * CustomerMonthRollup, only the days around them from Booking.
+    *
+    * @return the number of rows printed
+    */
+   public static int printTotalCost (DBProject esql, int hotelID, int customerID, int from, int to) throws SQLException {
+      int monthsFrom = DateCodec.dayOfMonth(from) == 1 ? from : DateCodec.firstOfNextMonth(from);
+      int monthsTo = DateCodec.firstOfMonth(to + 1);
+      if (monthsFrom >= monthsTo)
+         return esql.executeQuery(DBProject.CUSTOMER_TOTAL_COST, hotelID, customerID, from, to);
+      return esql.executeQuery(CUSTOMER_TOTAL_COST,
+            customerID, hotelID, monthsFrom, monthsTo,
+            customerID, hotelID, from, monthsFrom - 1, monthsTo, to,
+            customerID);
+   }//end printTotalCost
+
+}//end Rollups
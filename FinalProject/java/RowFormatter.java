@@ -0,0 +1,129 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * This class renders query results as tab separated rows into a large
+ * character buffer and writes the buffer out in one call once it fills up,
+ * instead of issuing one console write per cell.
+ *
+ * One formatter is kept per thread and reused for every query, see get.
+ */
+public class RowFormatter {
+
+   // characters collected before they are written out
+   static final int BUFFER_SIZE = 64 * 1024;
+
+   private static final ThreadLocal<RowFormatter> PER_THREAD = new ThreadLocal<RowFormatter>() {
+      @Override
+      protected RowFormatter initialValue () {
+         return new RowFormatter(new OutputStreamWriter(System.out));
+      }
+   };
+
+   private Writer out;
+   private final char[] buf = new char[BUFFER_SIZE];
+   private int len = 0;
+   private long rows = 0;
+
+   public RowFormatter (Writer out) {
+      this.out = out;
+   }//end RowFormatter
+
+   /**
+    * @return the formatter of the calling thread, writing to standard out
+    *         unless it was redirected
+    */
+   public static RowFormatter get () {
+      return PER_THREAD.get();
+   }//end get
+
+   /**
+    * Sends the output of this formatter somewhere else, e.g. a buffer.
+    *
+    * @param out the new target, or null for standard out
+    */
+   public void redirect (Writer out) throws IOException {
+      flush();
+      this.out = out != null ? out : new OutputStreamWriter(System.out);
+   }//end redirect
+
+   /**
+    * Appends one cell followed by a tab, the layout executeQuery always used.
+    *
+    * @param value the cell text, null is printed as "null"
+    */
+   public void cell (String value) throws IOException {
+      if (value == null)
+         value = "null";
+      int n = value.length();
+      if (this.len + n + 1 > this.buf.length)
+         drain();
+      if (n + 1 > this.buf.length) {
+         this.out.write(value);
+         this.out.write('\t');
+         return;
+      }//end if
+      value.getChars(0, n, this.buf, this.len);
+      this.len += n;
+      this.buf[this.len++] = '\t';
+   }//end cell
+
+   /**
+    * Ends the current row.
+    */
+   public void endRow () throws IOException {
+      if (this.len + 1 > this.buf.length)
+         drain();
+      this.buf[this.len++] = '\n';
+      ++this.rows;
+   }//end endRow
+
+   /**
+    * Appends rows rendered by another formatter.
+    *
+    * @param text the rows, each ended by a newline
+    * @param rows the number of rows in the text
+    */
+   public void append (String text, long rows) throws IOException {
+      drain();
+      this.out.write(text);
+      this.rows += rows;
+   }//end append
+
+   /**
+    * @return the number of rows written so far by this formatter
+    */
+   public long rows () {
+      return this.rows;
+   }//end rows
+
+   /**
+    * Writes out everything collected so far.
+    */
+   public void flush () throws IOException {
+      drain();
+      this.out.flush();
+   }//end flush
+
+   private void drain () throws IOException {
+      if (this.len > 0) {
+         this.out.write(this.buf, 0, this.len);
+         this.len = 0;
+      }//end if
+   }//end drain
+
+}//end RowFormatter
@@ -0,0 +1,234 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records how long the database helpers of DBProject take, how
+ * many round trips they make and how many rows they move.  Figures are kept
+ * per helper, per SQL statement and per menu operation; an operation is
+ * charged the time of the helper calls made while it runs, not the time the
+ * user spends typing at its prompts.
+ *
+ * Latencies go into log-linear histograms with 32 buckets per power of two,
+ * so percentiles are within about 3% of the real value.
+ */
+public class Stats {
+
+   // how often the report is written to DUMP_FILE, 0 turns the dump off
+   static final long DUMP_INTERVAL_MS = Long.getLong("dbproject.stats.dumpIntervalMs", 60000L);
+   static final String DUMP_FILE = System.getProperty("dbproject.stats.file", "dbproject-stats.txt");
+   // statements listed in the report, slowest total first
+   static final int TOP_STATEMENTS = 15;
+
+   private static final Map<String, Metric> OPERATIONS = new ConcurrentHashMap<String, Metric>();
+   private static final Map<String, Metric> HELPERS = new ConcurrentHashMap<String, Metric>();
+   private static final Map<String, Metric> STATEMENTS = new ConcurrentHashMap<String, Metric>();
+   private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<long[]>();
+
+   /**
+    * Latency histogram in nanoseconds.  Values below 32 have a bucket each,
+    * above that every power of two is cut into 32 buckets.
+    */
+   static class Histogram {
+      private static final int SUB_BITS = 5;
+      private static final int SUB = 1 << SUB_BITS;
+      private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+
+      void record (long nanos) {
+         this.counts.incrementAndGet(index(Math.max(0, nanos)));
+      }
+
+      static int index (long v) {
+         if (v < SUB)
+            return (int) v;
+         int e = 63 - Long.numberOfLeadingZeros(v);
+         return (e - SUB_BITS) * SUB + (int) (v >>> (e - SUB_BITS));
+      }
+
+      /* The middle of the bucket */
+      static long value (int index) {
+         if (index < SUB)
+            return index;
+         int e = index / SUB + SUB_BITS - 1;
+         long low = (long) (index % SUB + SUB) << (e - SUB_BITS);
+         return low + ((1L << (e - SUB_BITS)) >> 1);
+      }
+
+      /* The value below which the fraction p of the recorded values fall */
+      long percentile (double p) {
+         long total = 0;
+         for (int i = 0; i < this.counts.length(); ++i)
+            total += this.counts.get(i);
+         if (total == 0)
+            return 0;
+         long rank = Math.max(1, (long) Math.ceil(p * total));
+         long seen = 0;
+         for (int i = 0; i < this.counts.length(); ++i) {
+            seen += this.counts.get(i);
+            if (seen >= rank)
+               return value(i);
+         }//end for
+         return value(this.counts.length() - 1);
+      }
+   }//end Histogram
+
+   /**
+    * The figures of one helper, statement or operation.
+    */
+   static class Metric {
+      final String name;
+      final Histogram latency = new Histogram();
+      final LongAdder calls = new LongAdder();
+      final LongAdder nanos = new LongAdder();
+      final LongAdder trips = new LongAdder();
+      final LongAdder rows = new LongAdder();
+
+      Metric (String name) {
+         this.name = name;
+      }
+
+      void add (long nanos, long trips, long rows) {
+         this.latency.record(nanos);
+         this.calls.increment();
+         this.nanos.add(nanos);
+         this.trips.add(trips);
+         this.rows.add(rows);
+      }
+   }//end Metric
+
+   private static Metric metric (Map<String, Metric> map, String name) {
+      return map.computeIfAbsent(name, Metric::new);
+   }
+
+   /**
+    * Runs a menu operation, charging it the helper calls made on this thread
+    * until it returns.
+    *
+    * @param name the operation name shown in the report
+    * @param operation the menu method to run
+    */
+   public static void operation (String name, Runnable operation) {
+      long[] totals = new long[3];
+      CURRENT.set(totals);
+      try {
+         operation.run();
+      }finally{
+         CURRENT.remove();
+         metric(OPERATIONS, name).add(totals[0], totals[1], totals[2]);
+      }//end try
+   }//end operation
+
+   /**
+    * Records one helper call.
+    *
+    * @param helper the DBProject method, e.g. exists
+    * @param sql the statement it sent
+    * @param start System.nanoTime() when the call began
+    * @param trips the round trips the call made
+    * @param rows the rows sent or received
+    */
+   public static void call (String helper, String sql, long start, long trips, long rows) {
+      long nanos = System.nanoTime() - start;
+      metric(HELPERS, helper).add(nanos, trips, rows);
+      metric(STATEMENTS, sql).add(nanos, trips, rows);
+      long[] totals = CURRENT.get();
+      if (totals != null) {
+         totals[0] += nanos;
+         totals[1] += trips;
+         totals[2] += rows;
+      }//end if
+   }//end call
+
+   /**
+    * @return the report shown by the statistics menu option
+    */
+   public static String report () {
+      StringWriter buf = new StringWriter();
+      PrintWriter out = new PrintWriter(buf);
+      out.println("Statistics at " + new Date());
+      section(out, "Menu operation (database time per operation)", OPERATIONS.values(), OPERATIONS.size());
+      section(out, "Helper", HELPERS.values(), HELPERS.size());
+      section(out, "Statement (slowest total first)", STATEMENTS.values(), TOP_STATEMENTS);
+      out.flush();
+      return buf.toString();
+   }//end report
+
+   private static void section (PrintWriter out, String title, Iterable<Metric> metrics, int limit) {
+      List<Metric> sorted = new ArrayList<Metric>();
+      for (Metric m : metrics)
+         sorted.add(m);
+      Collections.sort(sorted, (a, b) -> Long.compare(b.nanos.sum(), a.nanos.sum()));
+      out.println();
+      out.println(String.format("%8s %10s %9s %9s %9s %9s %9s  %s", "calls", "total ms", "p50 ms", "p99 ms", "p999 ms", "trips/op", "rows/op", title));
+      for (Metric m : sorted.subList(0, Math.min(limit, sorted.size()))) {
+         long calls = Math.max(1, m.calls.sum());
+         String name = m.name.length() <= 160 ? m.name : m.name.substring(0, 157) + "...";
+         out.println(String.format("%8d %10.1f %9.3f %9.3f %9.3f %9.1f %9.1f  %s", m.calls.sum(), m.nanos.sum() / 1e6,
+               m.latency.percentile(0.50) / 1e6, m.latency.percentile(0.99) / 1e6, m.latency.percentile(0.999) / 1e6,
+               (double) m.trips.sum() / calls, (double) m.rows.sum() / calls, name));
+      }//end for
+   }//end section
+
+   /**
+    * Starts a daemon thread writing the report to DUMP_FILE every
+    * DUMP_INTERVAL_MS, replacing the previous dump.
+    */
+   public static void startDump () {
+      if (DUMP_INTERVAL_MS <= 0)
+         return;
+      Thread dumper = new Thread(() -> {
+         while (true) {
+            try {
+               Thread.sleep(DUMP_INTERVAL_MS);
+               dump(new File(DUMP_FILE));
+            }catch (InterruptedException e) {
+               return;
+            }catch (IOException e) {
+               System.err.println("Warning: could not write " + DUMP_FILE + ": " + e.getMessage());
+            }//end try
+         }//end while
+      }, "stats-dump");
+      dumper.setDaemon(true);
+      dumper.start();
+   }//end startDump
+
+   /**
+    * Writes the report to the file, going through a temporary file so a
+    * reader never sees half a report.
+    */
+   public static void dump (File file) throws IOException {
+      File tmp = new File(file.getPath() + ".tmp");
+      try (PrintWriter out = new PrintWriter(new FileWriter(tmp))) {
+         out.print(report());
+      }//end try
+      if (!tmp.renameTo(file)) {
+         file.delete();
+         if (!tmp.renameTo(file))
+            throw new IOException("cannot rename " + tmp + " to " + file);
+      }//end if
+   }//end dump
+
+}//end Stats
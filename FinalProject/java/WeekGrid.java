@@ -0,0 +1,120 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This class builds the weekly room view of listHotelRoomBookingsForAWeek:
+ * one row per room with one cell per day of the week, marked when the room
+ * is booked that day, and the number of free days.
+ *
+ * The week runs from Monday, the start date_trunc('week', ...) used, up to
+ * but not including the next Monday.  Booking is filtered on that half open
+ * range, which bookingIndex can serve, and left joined to Room, so every room
+ * comes back once with the offsets of its booked days; the rows are folded
+ * into a 7 bit mask per room on the client.
+ */
+public class WeekGrid {
+
+   static final String WEEK = "SELECT r.hotelID, r.roomNo, " + DateCodec.column("b.bookingDate") + " - ? FROM Room r "
+         + "LEFT JOIN Booking b ON b.hotelID = r.hotelID AND b.roomNo = r.roomNo AND b.bookingDate >= " + DateCodec.PARAM + " AND b.bookingDate < " + DateCodec.PARAM + " "
+         + "WHERE r.hotelID BETWEEN ? AND ? ORDER BY r.hotelID, r.roomNo";
+
+   private static final String[] WEEKDAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+   /**
+    * @param monday the first day of the week, see DateCodec.monday
+    * @return the column names of the grid, hotelID first when withHotel
+    */
+   public static String[] header (int monday, boolean withHotel) {
+      String[] header = new String[(withHotel ? 1 : 0) + 9];
+      int i = 0;
+      if (withHotel)
+         header[i++] = "hotelID";
+      header[i++] = "roomNo";
+      for (int d = 0; d < 7; ++d)
+         header[i++] = WEEKDAYS[d] + " " + DateCodec.format(monday + d).substring(0, 5);
+      header[i] = "freeDays";
+      return header;
+   }//end header
+
+   /* Folds the rows of one room into its mask and writes the room's grid row once the next room starts */
+   private static class Fold implements DBProject.RowHandler {
+      final RowFormatter out;
+      final boolean withHotel;
+      String hotel = null, room = null;
+      int booked = 0;
+      long rooms = 0, freeAllWeek = 0;
+
+      Fold (RowFormatter out, boolean withHotel) {
+         this.out = out;
+         this.withHotel = withHotel;
+      }
+
+      public void row (ResultSet rs) throws SQLException {
+         String hotel = rs.getString(1), room = rs.getString(2);
+         if (!hotel.equals(this.hotel) || !room.equals(this.room)) {
+            finish();
+            this.hotel = hotel;
+            this.room = room;
+         }//end if
+         int day = rs.getInt(3);
+         if (!rs.wasNull())
+            this.booked |= 1 << day;
+      }
+
+      void finish () throws SQLException {
+         if (this.room == null)
+            return;
+         try {
+            if (this.withHotel)
+               this.out.cell(this.hotel);
+            this.out.cell(this.room);
+            for (int d = 0; d < 7; ++d)
+               this.out.cell((this.booked & (1 << d)) != 0 ? "booked" : ".");
+            int free = 7 - Integer.bitCount(this.booked);
+            this.out.cell(Integer.toString(free));
+            this.out.endRow();
+            ++this.rooms;
+            if (free == 7)
+               ++this.freeAllWeek;
+         }catch (IOException e) {
+            throw new SQLException("Error writing results: " + e.getMessage());
+         }//end try
+         this.room = null;
+         this.booked = 0;
+      }
+   }//end Fold
+
+   /**
+    * Writes the grid rows of the hotels from firstHotel to lastHotel, both
+    * included, sorted by hotel and room.
+    *
+    * @param monday the first day of the week, see DateCodec.monday
+    * @param counts gets the number of rooms written and of rooms free all week added to it
+    * @return the number of rows written
+    */
+   public static long write (DBProject esql, int firstHotel, int lastHotel, int monday, boolean withHotel, RowFormatter out, long[] counts) throws SQLException {
+      Fold fold = new Fold(out, withHotel);
+      esql.forEachRow(WEEK, fold, monday, monday, monday + 7, firstHotel, lastHotel);
+      fold.finish();
+      synchronized (counts) {
+         counts[0] += fold.rooms;
+         counts[1] += fold.freeAllWeek;
+      }//end synchronized
+      return fold.rooms;
+   }//end write
+
+}//end WeekGrid
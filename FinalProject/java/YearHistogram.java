@@ -0,0 +1,73 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class counts events per calendar year in a plain int array indexed by
+ * the year's offset from the first year seen, so adding a count does not box
+ * or hash anything.
+ */
+public class YearHistogram {
+
+   private int base = 0;
+   private int[] counts = new int[0];
+   private long total = 0;
+
+   /**
+    * Adds count events to the given year, growing the array when the year is
+    * outside the range seen so far.
+    */
+   public void add (int year, int count) {
+      if (this.counts.length == 0) {
+         this.base = year;
+         this.counts = new int[16];
+      }else if (year < this.base) {
+         int shift = this.base - year;
+         int[] grown = new int[this.counts.length + shift];
+         System.arraycopy(this.counts, 0, grown, shift, this.counts.length);
+         this.counts = grown;
+         this.base = year;
+      }else if (year - this.base >= this.counts.length) {
+         int[] grown = new int[Math.max(this.counts.length * 2, year - this.base + 1)];
+         System.arraycopy(this.counts, 0, grown, 0, this.counts.length);
+         this.counts = grown;
+      }//end if
+      this.counts[year - this.base] += count;
+      this.total += count;
+   }//end add
+
+   /**
+    * @return the number of events counted for the year
+    */
+   public int get (int year) {
+      int i = year - this.base;
+      return i >= 0 && i < this.counts.length ? this.counts[i] : 0;
+   }//end get
+
+   /**
+    * @return the number of events counted over all years
+    */
+   public long total () {
+      return this.total;
+   }//end total
+
+   /**
+    * Prints one line per year that has events, oldest year first.
+    */
+   public void print (String label) {
+      for (int i = 0; i < this.counts.length; ++i) {
+         if (this.counts[i] != 0)
+            System.out.println("Year: " + (this.base + i) + " " + label + ": " + this.counts[i]);
+      }//end for
+   }//end print
+
+}//end YearHistogram
@@ -0,0 +1,19 @@
+#!/bin/sh
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# Export classpath with the postgressql driver
+export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
+
+# compile the java program
+javac *.java
+
+# the database has to be up, see compile.sh
+#./../postgresql/startPostgreSQL.sh
+#./../postgresql/createPostgreDB.sh
+
+# run the benchmarks, name operations after the login to run only those,
+# e.g. ./bench.sh bookRoom topKCompanies
+# results are appended to bench.csv as: time,operation,ops/s,error,alloc B/op,alloc MB/s
+java -Dbench.out=bench.csv Bench $USER"_DB" $PGPORT $USER "$@"
@@ -7,7 +7,7 @@ export PATH=$JAVA_HOME/bin:$PATH
 export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
 
 # compile the java program
-javac DBProject.java
+javac *.java
 
 #./../../startPostgreSQL.sh
 #./../../createPostgreDB.sh
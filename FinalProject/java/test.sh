@@ -0,0 +1,26 @@
+#!/bin/sh
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# Export classpath with the postgressql driver
+export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
+
+# compile the java program and the tests, they need no database
+OUT=${TMPDIR:-/tmp}/dbproject-test
+rm -rf $OUT
+mkdir -p $OUT
+javac -d $OUT *.java test/*.java || exit 1
+
+# run every test in its own JVM, name tests to run only those, e.g. ./test.sh StreamQueryTest
+TESTS="$@"
+if [ -z "$TESTS" ]; then
+   TESTS=`cd test && ls *Test.java | sed 's/\.java$//'`
+fi
+FAILED=0
+for TEST in $TESTS; do
+   WORK=$OUT/$TEST.work
+   mkdir -p $WORK
+   (cd $WORK && java -cp $OUT:$CLASSPATH $TEST) || FAILED=1
+done
+exit $FAILED
@@ -0,0 +1,41 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * Checks that a refresh of the availability index reads the rooms and
+ * bookings added by another program since it was built.
+ */
+public class AvailabilityIndexTest {
+
+   public static void main (String[] args) throws Exception {
+      FakeDatabase db = FakeDatabase.install();
+      db.answer("SELECT r.hotelID, r.roomNo FROM Room r", new Object[] {1, 10}, new Object[] {1, 11});
+      db.answer(AvailabilityIndex.BOOKINGS_AFTER, new Object[] {5, 1, 10, 100});
+      DBProject esql = new DBProject("test_DB", "5432", "test", "");
+      AvailabilityIndex index = AvailabilityIndex.build(esql);
+      Check.equal("[11]", Arrays.toString(index.availableRooms(1, 99, 101)), "rooms free after the build");
+
+      // another program adds a room and books room 11; bID 5 is read again within the overlap
+      db.answer("SELECT r.hotelID, r.roomNo FROM Room r", new Object[] {1, 10}, new Object[] {1, 11}, new Object[] {1, 12});
+      db.answer(AvailabilityIndex.BOOKINGS_AFTER, new Object[] {5, 1, 10, 100}, new Object[] {6, 1, 11, 101});
+      Check.equal(2, index.refresh(esql), "bookings read by the refresh");
+      Check.equal("[12]", Arrays.toString(index.availableRooms(1, 99, 101)), "rooms free after the refresh");
+      Check.equal("[10, 12]", Arrays.toString(index.availableRooms(1, 101, 101)), "rooms free on the day booked by the other program");
+      Check.equal("1 hotels, 2 booked rooms, 2 booked days", index.summary(), "a booking read again is not counted twice");
+      esql.cleanup();
+      Check.passed(AvailabilityIndexTest.class);
+   }//end main
+
+}//end AvailabilityIndexTest
@@ -0,0 +1,87 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the bookings journaled while the database was down are
+ * replayed on the next start, and that a booking the database refuses is
+ * rejected without holding up the ones journaled after it or marking its
+ * room booked.
+ */
+public class BookingJournalTest {
+
+   static final int POISON_CUSTOMER = 666;
+
+   public static void main (String[] args) throws Exception {
+      System.setProperty("dbproject.journal.file", "journal/bookings.bin");
+      System.setProperty("dbproject.journal.flushMs", "20");
+      System.setProperty("dbproject.journal.retryMs", "50");
+      System.setProperty("dbproject.journal.closeSeconds", "5");
+      FakeDatabase db = FakeDatabase.install();
+      DBProject esql = new DBProject("test_DB", "5432", "test", "");
+
+      // the first run journals three bookings while the database is down, the second one is poison
+      db.down(true);
+      BookingJournal journal = BookingJournal.open(esql);
+      journal.append(101, 1, 2, 3, DateCodec.of(2024, 5, 1), 2, 12000);
+      journal.append(102, POISON_CUSTOMER, 2, 3, DateCodec.of(2024, 5, 2), 2, 12000);
+      journal.append(103, 1, 2, 4, DateCodec.of(2024, 5, 3), 1, 9950);
+      journal.close();
+      Check.equal(3, journal.pending(), "bookings left in the journal");
+      Check.that(db.committed().isEmpty(), "nothing inserted while the database is down");
+
+      // the next run replays them, the database refuses the poison booking
+      db.down(false);
+      db.refuse(values -> values.length > 1 && Integer.valueOf(POISON_CUSTOMER).equals(values[1]));
+      journal = BookingJournal.open(esql);
+      for (long waited = 0; journal.pending() > 0 && waited < 10000; waited += 20)
+         Thread.sleep(20);
+      Check.equal(0, journal.pending(), "bookings left after the replay");
+      Check.equal("[101, 103]", insertedIDs(db).toString(), "bookings inserted by the replay");
+      Check.that(journal.summary().contains("2 inserted, 1 rejected"), "summary " + journal.summary());
+      List<String> rejected = Files.readAllLines(BookingJournal.REJECTED.toPath(), StandardCharsets.UTF_8);
+      Check.equal(1, rejected.size(), "lines in " + BookingJournal.REJECTED);
+      Check.that(rejected.get(0).startsWith("bID 102 customer 666 hotelID 2 roomNo 3 date 05/02/2024"), "rejected line " + rejected.get(0));
+      AvailabilityIndex availability = esql.availability();
+      Check.that(!availability.isAvailable(2, 3, DateCodec.of(2024, 5, 1), DateCodec.of(2024, 5, 1)), "room of an inserted booking is booked");
+      Check.that(availability.isAvailable(2, 3, DateCodec.of(2024, 5, 2), DateCodec.of(2024, 5, 2)), "room of the rejected booking stays free");
+
+      // a booking journaled after the replay is inserted on its own
+      journal.append(104, 1, 2, 3, DateCodec.of(2024, 5, 4), 2, 100);
+      journal.close();
+      Check.equal(0, journal.pending(), "bookings left after closing");
+      Check.equal("[101, 103, 104]", insertedIDs(db).toString(), "bookings inserted");
+
+      // the flushed records are not sent again
+      journal = BookingJournal.open(esql);
+      Check.equal(0, journal.pending(), "bookings to replay after a clean close");
+      journal.close();
+      Check.equal("[101, 103, 104]", insertedIDs(db).toString(), "bookings inserted after reopening");
+      Check.that(new File("journal/bookings.bin").isFile(), "journal file");
+      esql.cleanup();
+      Check.passed(BookingJournalTest.class);
+   }//end main
+
+   private static List<Object> insertedIDs (FakeDatabase db) {
+      List<Object> ids = new ArrayList<Object>();
+      for (Object[] values : db.committed())
+         ids.add(values[0]);
+      return ids;
+   }//end insertedIDs
+
+}//end BookingJournalTest
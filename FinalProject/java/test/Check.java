@@ -0,0 +1,43 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * The assertions of the tests.  A test is a class with a main method that
+ * returns when every check passed and throws otherwise, see test.sh.
+ */
+public class Check {
+
+   /**
+    * @throws AssertionError with the description when the condition is false
+    */
+   public static void that (boolean condition, String description) {
+      if (!condition)
+         throw new AssertionError(description);
+   }//end that
+
+   /**
+    * @throws AssertionError when the values differ
+    */
+   public static void equal (Object expected, Object actual, String description) {
+      if (expected == null ? actual != null : !expected.equals(actual))
+         throw new AssertionError(description + ": expected " + expected + " but was " + actual);
+   }//end equal
+
+   /**
+    * Prints that the test passed.
+    */
+   public static void passed (Class<?> test) {
+      System.out.println(test.getName() + " passed");
+   }//end passed
+
+}//end Check
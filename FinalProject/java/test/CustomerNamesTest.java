@@ -0,0 +1,59 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Checks that a customer name typed at the prompts of options 12 and 13
+ * passes verifyText and resolves through the CustomerNames dictionary.
+ */
+public class CustomerNamesTest {
+
+   public static void main (String[] args) throws Exception {
+      FakeDatabase db = FakeDatabase.install();
+      db.answer("SELECT c.customerID, c.fName, c.lName FROM Customer c",
+            new Object[] {1, "rzqs", "eyeg"}, new Object[] {2, "smfe", "yvmx"}, new Object[] {3, "smfe", "yvmx"});
+      db.answer(CustomerNames.CUSTOMER_BY_NAME, new Object[] {4, "Added ", "Later "});
+      DBProject esql = new DBProject("test_DB", "5432", "test", "");
+
+      Check.equal(0, esql.verifyText("Rzqs"), "verifyText of a name");
+      Check.equal(1, esql.verifyText("rz9s"), "verifyText of a name with a digit");
+      Check.equal(1, esql.verifyText("rz qs"), "verifyText of a name with a blank");
+      Check.equal(2, esql.verifyText("abcdefghijklmnopqrstuvwxyzabcde"), "verifyText of a name over 30 characters");
+
+      CustomerNames names = esql.customerNames();
+      List<CustomerNames.Match> found = names.find(" Rzqs", "EYEG ", 5);
+      Check.equal(1, found.size(), "matches of an exact name");
+      Check.equal(1, found.get(0).customerID, "customerID of an exact name");
+      found = names.find("sm", "yv", 5);
+      Check.equal(2, found.size(), "matches of a name prefix shared by two customers");
+      Check.equal(3, found.get(1).customerID, "matches ordered by customerID");
+      Check.equal(1, names.find("rzqs", "eyeg", 1).size(), "matches capped by the limit");
+
+      // a customer added outside the menu is found in the database and kept
+      found = names.find("added", "later", 5);
+      Check.equal(1, found.size(), "matches of a customer missing from the dictionary");
+      Check.equal(4, found.get(0).customerID, "customerID read from the database");
+      Check.equal("Added", names.customer(4).fName, "customer kept in the dictionary");
+
+      // the prompts of options 12 and 13 reach the database for a first name the dictionary does not know
+      db.answer(CustomerNames.CUSTOMER_BY_NAME, new Object[] {5, "Other ", "Program "});
+      DBProject.in = new BufferedReader(new StringReader("other\nprogram\n"));
+      Check.equal(5, DBProject.readCustomer(esql), "customerID read at the prompts");
+      esql.cleanup();
+      Check.passed(CustomerNamesTest.class);
+   }//end main
+
+}//end CustomerNamesTest
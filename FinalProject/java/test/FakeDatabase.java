@@ -0,0 +1,246 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for the jdbc:postgresql URLs DBProject connects to, which
+ * answers from memory, so the classes of the program can be tested without
+ * a server.  Queries return the rows given to answer for their SQL text, or
+ * no rows; updates are recorded and count as one row each.  Like the bundled
+ * pg73jdbc3.jar, it throws "not yet implemented" from setFetchSize and sets
+ * no SQLState on its exceptions.
+ */
+public class FakeDatabase implements Driver {
+
+   private final Map<String, List<Object[]>> answers = new ConcurrentHashMap<String, List<Object[]>>();
+   // the values of every committed update, in order
+   private final List<Object[]> committed = Collections.synchronizedList(new ArrayList<Object[]>());
+   private volatile Predicate<Object[]> refuse = values -> false;
+   private volatile boolean down = false;
+
+   /**
+    * Registers a new fake database with DriverManager, ahead of the real
+    * driver, which the tests do not load.
+    */
+   public static FakeDatabase install () throws SQLException {
+      FakeDatabase db = new FakeDatabase();
+      DriverManager.registerDriver(db);
+      return db;
+   }//end install
+
+   /**
+    * Makes queries with this SQL text return the rows.
+    */
+   public void answer (String sql, Object[]... rows) {
+      this.answers.put(sql, Arrays.asList(rows));
+   }//end answer
+
+   /**
+    * Makes the updates whose bound values pass the test fail, as a constraint violation would.
+    */
+   public void refuse (Predicate<Object[]> values) {
+      this.refuse = values;
+   }//end refuse
+
+   /**
+    * Makes every statement fail, as when the server is unreachable.
+    */
+   public void down (boolean down) {
+      this.down = down;
+   }//end down
+
+   /**
+    * @return the values of the committed updates
+    */
+   public List<Object[]> committed () {
+      synchronized (this.committed) {
+         return new ArrayList<Object[]>(this.committed);
+      }//end synchronized
+   }//end committed
+
+   public Connection connect (String url, Properties info) {
+      return acceptsURL(url) ? connection() : null;
+   }
+
+   public boolean acceptsURL (String url) {
+      return url.startsWith("jdbc:postgresql:");
+   }
+
+   public DriverPropertyInfo[] getPropertyInfo (String url, Properties info) {
+      return new DriverPropertyInfo[0];
+   }
+
+   public int getMajorVersion () {
+      return 7;
+   }
+
+   public int getMinorVersion () {
+      return 3;
+   }
+
+   public boolean jdbcCompliant () {
+      return false;
+   }
+
+   public Logger getParentLogger () {
+      return Logger.getGlobal();
+   }
+
+   private void failIfDown () throws SQLException {
+      if (this.down)
+         throw new SQLException("Connection refused. Check that the hostname and port are correct and that the postmaster is accepting TCP/IP connections.");
+   }//end failIfDown
+
+   /* The updates of a connection's open transaction, committed or dropped together */
+   private static class Transaction {
+      final List<Object[]> pending = new ArrayList<Object[]>();
+      boolean autoCommit = true;
+   }//end Transaction
+
+   private Connection connection () {
+      Transaction tx = new Transaction();
+      return proxy(Connection.class, (self, method, args) -> {
+         switch (method.getName()) {
+            case "prepareStatement": return statement(tx, (String) args[0]);
+            case "createStatement": return statement(tx, null);
+            case "getAutoCommit": return tx.autoCommit;
+            case "setAutoCommit":
+               if ((Boolean) args[0] && !tx.autoCommit)
+                  commit(tx);
+               tx.autoCommit = (Boolean) args[0];
+               return null;
+            case "commit": failIfDown(); commit(tx); return null;
+            case "rollback": tx.pending.clear(); return null;
+            default: return defaultValue(method.getReturnType());
+         }//end switch
+      });
+   }//end connection
+
+   private void commit (Transaction tx) {
+      this.committed.addAll(tx.pending);
+      tx.pending.clear();
+   }//end commit
+
+   private Statement statement (Transaction tx, String prepared) {
+      Map<Integer, Object> params = new ConcurrentHashMap<Integer, Object>();
+      List<Object[]> batch = new ArrayList<Object[]>();
+      Class<? extends Statement> type = prepared != null ? PreparedStatement.class : Statement.class;
+      return proxy(type, (self, method, args) -> {
+         switch (method.getName()) {
+            case "setObject":
+            case "setInt":
+            case "setString":
+            case "setBigDecimal":
+               params.put((Integer) args[0], args[1]);
+               return null;
+            case "setNull": params.put((Integer) args[0], "NULL"); return null;
+            case "clearParameters": params.clear(); return null;
+            case "setFetchSize": throw org.postgresql.Driver.notImplemented();
+            case "addBatch": batch.add(values(params)); return null;
+            case "clearBatch": batch.clear(); return null;
+            case "executeBatch": {
+               failIfDown();
+               int[] counts = new int[batch.size()];
+               for (int i = 0; i < counts.length; ++i)
+                  update(tx, batch.get(i));
+               Arrays.fill(counts, 1);
+               batch.clear();
+               return counts;
+            }
+            case "executeUpdate":
+               failIfDown();
+               update(tx, values(params));
+               return 1;
+            case "executeQuery": {
+               failIfDown();
+               List<Object[]> rows = this.answers.get(prepared != null ? prepared : (String) args[0]);
+               return resultSet(rows != null ? rows : Collections.<Object[]>emptyList());
+            }
+            default: return defaultValue(method.getReturnType());
+         }//end switch
+      });
+   }//end statement
+
+   private static Object[] values (Map<Integer, Object> params) {
+      Object[] values = new Object[params.size()];
+      for (Map.Entry<Integer, Object> e : params.entrySet())
+         values[e.getKey() - 1] = e.getValue();
+      return values;
+   }//end values
+
+   private void update (Transaction tx, Object[] values) throws SQLException {
+      if (this.refuse.test(values))
+         throw new SQLException("ERROR:  insert or update violates foreign key constraint");
+      tx.pending.add(values);
+      if (tx.autoCommit)
+         commit(tx);
+   }//end update
+
+   private static ResultSet resultSet (List<Object[]> rows) {
+      int[] at = {-1};
+      boolean[] wasNull = {false};
+      return proxy(ResultSet.class, (self, method, args) -> {
+         String name = method.getName();
+         if (name.equals("next"))
+            return ++at[0] < rows.size();
+         if (name.equals("wasNull"))
+            return wasNull[0];
+         if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+            Object value = rows.get(at[0])[(Integer) args[0] - 1];
+            wasNull[0] = value == null;
+            switch (name) {
+               case "getInt": return value == null ? 0 : ((Number) value).intValue();
+               case "getLong": return value == null ? 0L : ((Number) value).longValue();
+               case "getString": return value == null ? null : value.toString();
+               case "getBoolean": return value != null && (Boolean) value;
+               default: return value;
+            }//end switch
+         }//end if
+         return defaultValue(method.getReturnType());
+      });
+   }//end resultSet
+
+   private static <T> T proxy (Class<T> type, InvocationHandler handler) {
+      return type.cast(Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] {type}, handler));
+   }//end proxy
+
+   private static Object defaultValue (Class<?> type) {
+      if (type == boolean.class)
+         return false;
+      if (type == int.class)
+         return 0;
+      if (type == long.class)
+         return 0L;
+      return null;
+   }//end defaultValue
+
+}//end FakeDatabase
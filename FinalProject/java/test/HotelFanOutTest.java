@@ -0,0 +1,58 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.StringWriter;
+import java.sql.SQLException;
+
+/**
+ * Checks that a fan out over every hotel writes the rows of its ranges in
+ * hotel order when later ranges finish first, and that a failed range fails
+ * the report.
+ */
+public class HotelFanOutTest {
+
+   public static void main (String[] args) throws Exception {
+      int[] hotels = new int[20 * HotelFanOut.HOTELS_PER_PARTITION];
+      for (int i = 0; i < hotels.length; ++i)
+         hotels[i] = i + 1;
+      StringWriter text = new StringWriter();
+      RowFormatter.get().redirect(text);
+      long rows = HotelFanOut.run(hotels, new String[] {"hotelID"}, (firstHotel, lastHotel, range, out) -> {
+         // the first ranges take the longest
+         Thread.sleep(Math.max(0, 40 - range[0] / HotelFanOut.HOTELS_PER_PARTITION * 2));
+         for (int hotel : range) {
+            out.cell(Integer.toString(hotel));
+            out.endRow();
+         }//end for
+      });
+      Check.equal((long) hotels.length, rows, "rows of every range");
+      Check.equal(hotels.length + 1L, RowFormatter.get().rows(), "rows counted by the caller's formatter");
+      StringBuilder expected = new StringBuilder("hotelID\t\n");
+      for (int hotel : hotels)
+         expected.append(hotel).append("\t\n");
+      Check.equal(expected.toString(), text.toString(), "rows in hotel order");
+
+      try {
+         HotelFanOut.run(hotels, new String[] {"hotelID"}, (firstHotel, lastHotel, range, out) -> {
+            if (range[0] == 1 + 5 * HotelFanOut.HOTELS_PER_PARTITION)
+               throw new SQLException("range failed");
+         });
+         Check.that(false, "a failed range fails the report");
+      }catch (SQLException e) {
+         Check.equal("range failed", e.getMessage(), "error of the failed range");
+      }//end try
+      RowFormatter.get().redirect(null);
+      Check.passed(HotelFanOutTest.class);
+   }//end main
+
+}//end HotelFanOutTest
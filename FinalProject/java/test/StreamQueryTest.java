@@ -0,0 +1,43 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the streamed queries run with the bundled pg73jdbc3.jar, whose
+ * setFetchSize is not implemented.
+ */
+public class StreamQueryTest {
+
+   public static void main (String[] args) throws Exception {
+      FakeDatabase db = FakeDatabase.install();
+
+      // a statement of the shipped driver, which is built without a server
+      PreparedStatement stmt = new org.postgresql.jdbc3.Jdbc3PreparedStatement(new org.postgresql.jdbc3.Jdbc3Connection(), "SELECT c.customerID FROM Customer c WHERE c.customerID > ?");
+      Check.that(!DBProject.fetchInBatches(stmt, DBProject.FETCH_SIZE), "pg73jdbc3.jar cannot fetch in batches");
+
+      String query = "SELECT c.customerID, c.fName FROM Customer c WHERE c.customerID > ?";
+      db.answer(query, new Object[] {1, "rzqs"}, new Object[] {2, "smfe"}, new Object[] {3, null});
+      DBProject esql = new DBProject("test_DB", "5432", "test", "");
+      List<String> names = new ArrayList<String>();
+      int rows = esql.forEachRow(query, rs -> names.add(rs.getInt(1) + " " + rs.getString(2)), 0);
+      Check.equal(3, rows, "rows read by forEachRow");
+      Check.equal("[1 rzqs, 2 smfe, 3 null]", names.toString(), "rows handed to the handler");
+      Check.that(db.committed().isEmpty(), "a query updates nothing");
+      esql.cleanup();
+      Check.passed(StreamQueryTest.class);
+   }//end main
+
+}//end StreamQueryTest
@@ -171,3 +171,49 @@ WHERE hotel.hotelID = Staff.employerID AND Staff.role = 'Manager';
 \COPY Request(reqID, managerID, repairID, requestDate, description) FROM '../data/request.csv'WITH DELIMITER ',';		
 
 \COPY Assigned(asgID, staffID, hotelID, roomNo) FROM '../data/assigned.csv' WITH DELIMITER ',';			
+
+-- The below sql statements create the sequences the java program uses to hand out primary keys.
+-- Each nextval reserves a block of 50 keys (see KeyAllocator.BLOCK_SIZE), so they start after the loaded data.
+DROP SEQUENCE IF EXISTS customer_id_seq;
+DROP SEQUENCE IF EXISTS booking_id_seq;
+DROP SEQUENCE IF EXISTS repair_id_seq;
+DROP SEQUENCE IF EXISTS request_id_seq;
+DROP SEQUENCE IF EXISTS assigned_id_seq;
+
+CREATE SEQUENCE customer_id_seq INCREMENT BY 50;
+CREATE SEQUENCE booking_id_seq INCREMENT BY 50;
+CREATE SEQUENCE repair_id_seq INCREMENT BY 50;
+CREATE SEQUENCE request_id_seq INCREMENT BY 50;
+CREATE SEQUENCE assigned_id_seq INCREMENT BY 50;
+
+SELECT setval('customer_id_seq', CAST((SELECT COALESCE(MAX(customerID), 0) + 1 FROM Customer) AS bigint), false);
+SELECT setval('booking_id_seq', CAST((SELECT COALESCE(MAX(bID), 0) + 1 FROM Booking) AS bigint), false);
+SELECT setval('repair_id_seq', CAST((SELECT COALESCE(MAX(rID), 0) + 1 FROM Repair) AS bigint), false);
+SELECT setval('request_id_seq', CAST((SELECT COALESCE(MAX(reqID), 0) + 1 FROM Request) AS bigint), false);
+SELECT setval('assigned_id_seq', CAST((SELECT COALESCE(MAX(asgID), 0) + 1 FROM Assigned) AS bigint), false);
+
+-- The below sql statements create the booking rollups (see Rollups.java): bookings and revenue per hotel and day,
+-- and per customer, hotel and month (stored as the first day of the month). bookRoom keeps them current,
+-- "java DBProject <dbname> <port> <user> rollup" rebuilds them from Booking.
+DROP TABLE IF EXISTS HotelDayRollup;
+DROP TABLE IF EXISTS CustomerMonthRollup;
+
+CREATE TABLE HotelDayRollup( hotelID Numeric NOT NULL,
+					 day Date NOT NULL,
+					 bookings Numeric NOT NULL,
+					 revenue Numeric(14,2) NOT NULL,
+					 PRIMARY KEY(hotelID, day));
+
+CREATE TABLE CustomerMonthRollup( customer Numeric NOT NULL,
+					 hotelID Numeric NOT NULL,
+					 month Date NOT NULL,
+					 bookings Numeric NOT NULL,
+					 revenue Numeric(14,2) NOT NULL,
+					 PRIMARY KEY(customer, hotelID, month));
+
+INSERT INTO HotelDayRollup (hotelID, day, bookings, revenue)
+SELECT b.hotelID, b.bookingDate, COUNT(*), SUM(b.price) FROM Booking b GROUP BY b.hotelID, b.bookingDate;
+
+INSERT INTO CustomerMonthRollup (customer, hotelID, month, bookings, revenue)
+SELECT b.customer, b.hotelID, CAST(date_trunc('month', b.bookingDate) AS date), COUNT(*), SUM(b.price)
+FROM Booking b GROUP BY b.customer, b.hotelID, CAST(date_trunc('month', b.bookingDate) AS date);
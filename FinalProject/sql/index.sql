@@ -2,9 +2,13 @@ DROP INDEX IF EXISTS hotelIndex;
 DROP INDEX IF EXISTS staffIndex;
 DROP INDEX IF EXISTS roomIndex;
 DROP INDEX IF EXISTS customerIndex;
+DROP INDEX IF EXISTS customerNameIndex;
 DROP INDEX IF EXISTS maintenanceIndex; 
 DROP INDEX IF EXISTS bookingIndex;
+DROP INDEX IF EXISTS bookingCustomerIndex;
+DROP INDEX IF EXISTS bookingDateBrin;
 DROP INDEX IF EXISTS repairIndex;
+DROP INDEX IF EXISTS repairDateBrin;
 DROP INDEX IF EXISTS requestIndex; 
 DROP INDEX IF EXISTS assignedIndex; 
 
@@ -30,20 +34,40 @@ ON Customer
 USING BTREE
 (customerID);
 
+-- customer names as CustomerNames.normalize stores them, used by CUSTOMER_BY_NAME
+CREATE INDEX customerNameIndex
+ON Customer
+USING BTREE
+(lower(trim(lName)), lower(trim(fName)));
+
 CREATE INDEX maintenanceIndex
 ON MaintenanceCompany
 USING BTREE
 (cmpID);
 
-CREATE INDEX bookingIndex
+-- Booking and Repair keep the BRIN date indexes of the partition mode once they are partitioned, see PartitionMigrator.java
+DO $$
+BEGIN
+   IF EXISTS (SELECT 1 FROM pg_class WHERE oid = 'booking'::regclass AND relkind = 'p') THEN
+      CREATE INDEX bookingIndex ON Booking USING BRIN (bookingDate);
+   ELSE
+      CREATE INDEX bookingIndex ON Booking USING BTREE (bookingDate);
+   END IF;
+END $$;
+
+CREATE INDEX bookingCustomerIndex
 ON Booking
 USING BTREE
-(bookingDate);
+(customer);
 
-CREATE INDEX repairIndex
-ON Repair
-USING BTREE
-(repairDate);
+DO $$
+BEGIN
+   IF EXISTS (SELECT 1 FROM pg_class WHERE oid = 'repair'::regclass AND relkind = 'p') THEN
+      CREATE INDEX repairIndex ON Repair USING BRIN (repairDate);
+   ELSE
+      CREATE INDEX repairIndex ON Repair USING BTREE (repairDate);
+   END IF;
+END $$;
 
 CREATE INDEX requestIndex
 ON Request